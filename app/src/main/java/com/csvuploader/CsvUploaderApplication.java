@@ -2,8 +2,10 @@ package com.csvuploader;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CsvUploaderApplication {
     public static void main(String[] args) {
         SpringApplication.run(CsvUploaderApplication.class, args);
@@ -0,0 +1,86 @@
+package com.csvuploader.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    public static final String INGESTION_EXECUTOR = "ingestionExecutor";
+
+    public static final String TRANSFORM_EXECUTOR = "transformExecutor";
+
+    public static final String PREVIEW_EXECUTOR = "previewExecutor";
+
+    @Value("${csv.ingestion.pool-size:2}")
+    private int poolSize;
+
+    @Value("${csv.ingestion.queue-capacity:10}")
+    private int queueCapacity;
+
+    @Value("${csv.preview.pool-size:1}")
+    private int previewPoolSize;
+
+    @Value("${csv.preview.queue-capacity:0}")
+    private int previewQueueCapacity;
+
+    // 0 means one worker per available core
+    @Value("${csv.import.transform-workers:0}")
+    private int transformWorkers;
+
+    @Bean(name = INGESTION_EXECUTOR)
+    public ThreadPoolTaskExecutor ingestionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+
+        // Bounded queue: once full, submissions fail with TaskRejectedException
+        // and the upload endpoint answers 429 instead of piling up work
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ingest-");
+
+        // CSVProcessingService.stopImports stops running imports at their next
+        // chunk and keeps queued ones from starting; wait for that so the
+        // DataSource is not closed under a chunk being committed. An import
+        // still running after 30 s is marked failed on the next startup and
+        // resumes from its last committed chunk
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Runs upload previews, which read and map a whole file like an import.
+     * Bounded like the ingestion pool, by default to one preview at a time
+     * with none waiting, so further previews are answered with 429 instead
+     * of crowding the transform pool and the database.
+     */
+    @Bean(name = PREVIEW_EXECUTOR)
+    public ThreadPoolTaskExecutor previewExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(previewPoolSize);
+        executor.setMaxPoolSize(previewPoolSize);
+        executor.setQueueCapacity(previewQueueCapacity);
+        executor.setThreadNamePrefix("preview-");
+        return executor;
+    }
+
+    /**
+     * Shared pool that maps parsed record batches to products. Each import
+     * bounds its own in-flight batches, so the queue here never grows past
+     * a few batches per running import.
+     */
+    @Bean(name = TRANSFORM_EXECUTOR)
+    public ThreadPoolTaskExecutor transformExecutor() {
+        int workers = transformWorkers > 0 ? transformWorkers : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setThreadNamePrefix("transform-");
+        return executor;
+    }
+}
@@ -0,0 +1,113 @@
+package com.csvuploader.controller;
+
+import com.csvuploader.model.ProductView;
+import com.csvuploader.repository.UploadedFileRepository;
+import com.csvuploader.service.ExportFormat;
+import com.csvuploader.service.ProductExportService;
+import com.csvuploader.service.ProductLookupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read API over the current catalog, for systems that sync products from
+ * it. Lookups go through ProductLookupService's cache, so read traffic
+ * mostly stays off the database the imports write to.
+ */
+@Controller
+public class ProductController {
+
+    @Autowired
+    private ProductLookupService productLookupService;
+
+    @Autowired
+    private ProductExportService productExportService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    public record LookupRequest(List<String> keys) {
+    }
+
+    /**
+     * The current catalog as CSV or NDJSON, optionally gzipped and filtered
+     * by style number or by the upload that last wrote each row, streamed
+     * to the client as it is read.
+     */
+    @GetMapping("/api/products/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String styleNumber, @RequestParam(required = false) Long uploadId,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromName(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (uploadId != null && !uploadedFileRepository.existsById(uploadId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+
+        StreamingResponseBody body = out -> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : out,
+                    StandardCharsets.UTF_8), 64 * 1024);
+            productExportService.export(exportFormat, styleNumber, uploadId, writer);
+            if (compressed != null) {
+                compressed.finish();
+            }
+        };
+        String fileName = "products." + exportFormat.getName() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
+    @GetMapping("/api/products/{uniqueKey}")
+    @ResponseBody
+    public ResponseEntity<?> getProduct(@PathVariable String uniqueKey) {
+        Optional<ProductView> product = productLookupService.find(uniqueKey);
+        if (product.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Product not found"));
+        }
+        return ResponseEntity.ok(product.get());
+    }
+
+    /**
+     * Products for up to csv.products.lookup.max-keys keys in one call, in
+     * request order; keys without a product are listed under missing.
+     */
+    @PostMapping("/api/products/lookup")
+    @ResponseBody
+    public ResponseEntity<?> lookupProducts(@RequestBody LookupRequest request) {
+        if (request.keys() == null || request.keys().contains(null)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "keys must be a list of unique keys"));
+        }
+        try {
+            Map<String, ProductView> products = productLookupService.findAll(request.keys());
+            Set<String> missing = new LinkedHashSet<>(request.keys());
+            missing.removeAll(products.keySet());
+            return ResponseEntity.ok(Map.of("products", products.values(), "missing", missing));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
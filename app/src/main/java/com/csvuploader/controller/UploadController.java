@@ -0,0 +1,562 @@
+// src/main/java/com/csvuploader/controller/UploadController.java
+package com.csvuploader.controller;
+
+import com.csvuploader.repository.ProductRepository;
+import com.csvuploader.model.UploadPage;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import com.csvuploader.service.CSVProcessingService;
+import com.csvuploader.service.ChunkedUploadService;
+import com.csvuploader.service.FileStorageService;
+import com.csvuploader.service.RecordReader;
+import com.csvuploader.service.SystemStatsService;
+import com.csvuploader.service.UploadDiffService;
+import com.csvuploader.service.UploadHistoryService;
+import com.csvuploader.service.UploadProgressService;
+import com.csvuploader.service.ValidationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@Controller
+public class UploadController {
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private ValidationService validationService;
+
+    @Autowired
+    private UploadProgressService uploadProgressService;
+
+    @Autowired
+    private UploadHistoryService uploadHistoryService;
+
+    @Autowired
+    private SystemStatsService systemStatsService;
+
+    @Autowired
+    private UploadDiffService uploadDiffService;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Value("${csv.ingestion.retry-after-seconds:30}")
+    private int retryAfterSeconds;
+
+    @Value("${csv.import.reader:commons-csv}")
+    private String defaultRecordReader;
+
+    @GetMapping("/")
+    public String index(Model model) {
+        UploadPage page = uploadHistoryService.page(null, null);
+        model.addAttribute("uploads", page.uploads());
+        model.addAttribute("nextCursor", page.nextCursor());
+        return "index";
+    }
+
+    /**
+     * Stores the file and queues its import; mode=preview is handled by
+     * previewUpload.
+     */
+    @PostMapping("/upload")
+    @ResponseBody
+    public ResponseEntity<?> handleFileUpload(@RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String reader,
+            @RequestParam(defaultValue = "import") String mode) {
+        Map<String, Object> response = new HashMap<>();
+
+        if (!"import".equals(mode)) {
+            response.put("error", "Unknown mode: " + mode + " (expected import or preview)");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        RecordReader recordReader;
+        try {
+            recordReader = RecordReader.fromName(reader != null ? reader : defaultRecordReader);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        try {
+            String invalid = invalidFile(file);
+            if (invalid != null) {
+                response.put("error", invalid);
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            // Store file, computing the checksum on the way
+            FileStorageService.StoredFile storedFile = fileStorageService.storeFile(file);
+            String storedFilePath = storedFile.path();
+
+            // Check for idempotency
+            if (uploadedFileRepository.findByChecksum(storedFile.checksum()).isPresent()) {
+                fileStorageService.deleteFile(storedFilePath);
+                response.put("error", "This file has already been uploaded");
+                return ResponseEntity.status(409).body(response);
+            }
+
+            // Create upload record
+            UploadedFile uploadedFile = new UploadedFile(file.getOriginalFilename(), storedFile.checksum());
+            uploadedFile.setStoredFilePath(storedFilePath);
+            uploadedFile.setEstimatedRows(storedFile.estimatedRows());
+            uploadedFile.setRecordReader(recordReader.getName());
+            uploadedFile.setStatus("queued");
+            try {
+                uploadedFile = uploadedFileRepository.save(uploadedFile);
+            } catch (DataIntegrityViolationException e) {
+                // The same file was uploaded concurrently and won the unique checksum
+                fileStorageService.deleteFile(storedFilePath);
+                response.put("error", "This file has already been uploaded");
+                return ResponseEntity.status(409).body(response);
+            }
+
+            // Process in background
+            try {
+                csvProcessingService.processCsvFile(uploadedFile.getId(), storedFilePath);
+            } catch (TaskRejectedException e) {
+                // Ingestion queue is full: forget this upload so the same file can be sent again
+                uploadedFileRepository.delete(uploadedFile);
+                fileStorageService.deleteFile(storedFilePath);
+                return tooManyRequests(response);
+            }
+
+            response.put("success", true);
+            response.put("message", "File uploaded successfully. Queued for processing.");
+            response.put("upload", Map.of(
+                    "id", uploadedFile.getId(),
+                    "fileName", uploadedFile.getFileName(),
+                    "status", uploadedFile.getStatus()));
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            response.put("error", "Upload failed: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * Reads and maps the file as the import would, compares it with the
+     * stored rows and discards it; the response tells what importing it
+     * would change. The preview runs on the preview pool and the request
+     * completes asynchronously, so no request thread waits on it.
+     */
+    @PostMapping(value = "/upload", params = "mode=preview")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<?>> previewUpload(@RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String reader) {
+        Map<String, Object> response = new HashMap<>();
+        String storedFilePath = null;
+        try {
+            RecordReader recordReader = RecordReader.fromName(reader != null ? reader : defaultRecordReader);
+            String invalid = invalidFile(file);
+            if (invalid != null) {
+                response.put("error", invalid);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+            }
+
+            FileStorageService.StoredFile storedFile = fileStorageService.storeFile(file);
+            String previewedPath = storedFilePath = storedFile.path();
+            return csvProcessingService.preview(previewedPath, file.getOriginalFilename(), recordReader)
+                    .handle((preview, error) -> {
+                        fileStorageService.deleteFile(previewedPath);
+                        if (error != null) {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error;
+                            response.put("error", "Preview failed: " + cause.getMessage());
+                            return ResponseEntity.internalServerError().body(response);
+                        }
+                        response.put("success", true);
+                        response.put("alreadyUploaded",
+                                uploadedFileRepository.findByChecksum(storedFile.checksum()).isPresent());
+                        response.put("preview", preview);
+                        return ResponseEntity.ok(response);
+                    });
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        } catch (TaskRejectedException e) {
+            fileStorageService.deleteFile(storedFilePath);
+            return CompletableFuture.completedFuture(tooManyRequests(response));
+        } catch (Exception e) {
+            if (storedFilePath != null) {
+                fileStorageService.deleteFile(storedFilePath);
+            }
+            response.put("error", "Preview failed: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().body(response));
+        }
+    }
+
+    /**
+     * Starts a chunked upload of a file of size bytes whose MD5 is checksum.
+     * The chunks are then PUT to /api/uploads/{id}/chunks/{index}, and the
+     * upload is completed with POST /api/uploads/{id}/complete. With stream
+     * set the import starts now and reads the chunks as they arrive.
+     */
+    @PostMapping("/api/uploads/chunked")
+    @ResponseBody
+    public ResponseEntity<?> startChunkedUpload(@RequestParam String fileName, @RequestParam long size,
+            @RequestParam String checksum, @RequestParam(required = false) Long chunkSize,
+            @RequestParam(required = false) String reader, @RequestParam(defaultValue = "false") boolean stream) {
+        Map<String, Object> response = new HashMap<>();
+        if (!isDelimitedTextFile(fileName)) {
+            response.put("error", "Please upload a CSV, TSV or TXT file, plain or compressed with gzip, zip or zstd");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        ChunkedUploadService.ChunkedUploadState state;
+        try {
+            RecordReader recordReader = RecordReader.fromName(reader != null ? reader : defaultRecordReader);
+            state = chunkedUploadService.start(fileName, size, checksum, chunkSize, recordReader, stream);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IllegalStateException | DataIntegrityViolationException e) {
+            response.put("error", e instanceof IllegalStateException ? e.getMessage() : "This file has already been uploaded");
+            return ResponseEntity.status(409).body(response);
+        } catch (Exception e) {
+            response.put("error", "Upload failed: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+
+        if (stream) {
+            UploadedFile uploadedFile = uploadedFileRepository.findById(state.uploadId()).orElseThrow();
+            try {
+                csvProcessingService.processCsvFile(uploadedFile.getId(), uploadedFile.getStoredFilePath());
+            } catch (TaskRejectedException e) {
+                chunkedUploadService.cancel(uploadedFile.getId());
+                uploadedFileRepository.delete(uploadedFile);
+                return tooManyRequests(response);
+            }
+        }
+
+        response.put("success", true);
+        response.put("upload", state);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/api/uploads/{fileId}/chunks")
+    @ResponseBody
+    public ResponseEntity<?> getChunkedUpload(@PathVariable Long fileId) {
+        return chunkedUploadService.state(fileId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(404)
+                        .body(Map.of("error", "No chunked upload in progress for upload " + fileId)));
+    }
+
+    // The raw chunk bytes as the body, checksum being their MD5 in hex
+    @PutMapping("/api/uploads/{fileId}/chunks/{index}")
+    @ResponseBody
+    public ResponseEntity<?> putChunk(@PathVariable Long fileId, @PathVariable int index,
+            @RequestParam String checksum, InputStream body) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.receiveChunk(fileId, index, checksum, body));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Chunk upload failed: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/api/uploads/{fileId}/complete")
+    @ResponseBody
+    public ResponseEntity<?> completeChunkedUpload(@PathVariable Long fileId) {
+        Map<String, Object> response = new HashMap<>();
+
+        ChunkedUploadService.ChunkedUploadState state;
+        try {
+            state = chunkedUploadService.complete(fileId);
+        } catch (NoSuchElementException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(404).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.unprocessableEntity().body(response);
+        } catch (IllegalStateException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(409).body(response);
+        } catch (Exception e) {
+            response.put("error", "Upload failed: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+
+        // A streamed import is already running, unless it gave up waiting for
+        // chunks; then it carries on from its checkpoint
+        UploadedFile uploadedFile = uploadedFileRepository.findById(fileId).orElseThrow();
+        if (!state.stream() || "failed".equals(uploadedFile.getStatus())) {
+            uploadedFile.setStatus("queued");
+            uploadedFile = uploadedFileRepository.save(uploadedFile);
+            try {
+                csvProcessingService.processCsvFile(uploadedFile.getId(), uploadedFile.getStoredFilePath());
+            } catch (TaskRejectedException e) {
+                // The file is stored, so the upload can be resumed later
+                uploadedFile.setStatus("failed");
+                uploadedFile.setErrorMessage("Ingestion queue was full, resume the upload to import it");
+                uploadedFileRepository.save(uploadedFile);
+                return tooManyRequests(response);
+            }
+        }
+
+        response.put("success", true);
+        response.put("message", "File received. Queued for processing.");
+        response.put("upload", Map.of(
+                "id", uploadedFile.getId(),
+                "fileName", uploadedFile.getFileName(),
+                "status", uploadedFile.getStatus()));
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/api/uploads")
+    @ResponseBody
+    public ResponseEntity<?> getUploadsApi(@RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return uploadPage(cursor, limit);
+    }
+
+    /**
+     * Server-sent "progress" events for one upload: the current state first,
+     * then status changes and running counts, rate and ETA until it finishes.
+     */
+    @GetMapping("/api/uploads/{fileId}/events")
+    public SseEmitter uploadEvents(@PathVariable Long fileId) {
+        return uploadProgressService.subscribe(fileId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found"));
+    }
+
+    @PostMapping("/api/uploads/{fileId}/resume")
+    @ResponseBody
+    public ResponseEntity<?> resumeUpload(@PathVariable Long fileId) {
+        Map<String, Object> response = new HashMap<>();
+
+        UploadedFile uploadedFile = uploadedFileRepository.findById(fileId).orElse(null);
+        if (uploadedFile == null) {
+            response.put("error", "Upload not found");
+            return ResponseEntity.status(404).body(response);
+        }
+
+        if (!"failed".equals(uploadedFile.getStatus())) {
+            response.put("error", "Only failed uploads can be resumed (status is " + uploadedFile.getStatus() + ")");
+            return ResponseEntity.status(409).body(response);
+        }
+
+        String storedFilePath = uploadedFile.getStoredFilePath();
+        if (storedFilePath == null || !Files.exists(Paths.get(storedFilePath))) {
+            response.put("error", "Stored file is no longer available, please upload it again");
+            return ResponseEntity.status(410).body(response);
+        }
+
+        // Of two concurrent resumes only one gets to queue the import
+        if (uploadedFileRepository.claimStatus(fileId, "failed", "queued") == 0) {
+            response.put("error", "Upload " + fileId + " is already being resumed");
+            return ResponseEntity.status(409).body(response);
+        }
+        uploadedFile.setStatus("queued");
+        try {
+            csvProcessingService.processCsvFile(uploadedFile.getId(), storedFilePath);
+        } catch (TaskRejectedException e) {
+            uploadedFileRepository.claimStatus(fileId, "queued", "failed");
+            return tooManyRequests(response);
+        }
+
+        Integer checkpoint = uploadedFile.getCheckpointRecord();
+        response.put("success", true);
+        response.put("message", "Resuming after record " + (checkpoint != null ? checkpoint : 0) + ".");
+        response.put("upload", Map.of(
+                "id", uploadedFile.getId(),
+                "fileName", uploadedFile.getFileName(),
+                "status", uploadedFile.getStatus()));
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Why a multipart upload cannot be taken, or null
+    private String invalidFile(MultipartFile file) {
+        if (file.isEmpty()) {
+            return "Please select a file";
+        }
+        if (!isDelimitedTextFile(file.getOriginalFilename())) {
+            return "Please upload a CSV, TSV or TXT file, plain or compressed with gzip, zip or zstd";
+        }
+        return null;
+    }
+
+    // The delimiter and compression are detected from the content, so any of these will do
+    private boolean isDelimitedTextFile(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".zip")) {
+            return true;
+        }
+        if (name.endsWith(".gz") || name.endsWith(".zst")) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        return name.endsWith(".csv") || name.endsWith(".tsv") || name.endsWith(".txt");
+    }
+
+    private ResponseEntity<?> tooManyRequests(Map<String, Object> response) {
+        response.put("error", "Too many uploads are being processed, please retry in " + retryAfterSeconds + " seconds");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(response);
+    }
+
+    @GetMapping("/api/validate/{fileId}")
+    @ResponseBody
+    public ResponseEntity<?> validateUpload(@PathVariable Long fileId,
+            @RequestParam(required = false) List<String> keys,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        try {
+            Map<String, Object> validationResult = validationService.validateUpload(fileId, keys, page, size);
+            return ResponseEntity.ok(validationResult);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Expected keys as a plain-text body, one per line, read as it streams in
+    @PostMapping(value = "/api/validate/{fileId}", consumes = MediaType.TEXT_PLAIN_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> validateUploadKeys(@PathVariable Long fileId, InputStream keys,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        try (Reader reader = new InputStreamReader(keys, StandardCharsets.UTF_8)) {
+            return ResponseEntity.ok(validationService.validateUpload(fileId, reader, page, size));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Expected keys as an uploaded file ("keys" part), one per line
+    @PostMapping(value = "/api/validate/{fileId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> validateUploadKeyFile(@PathVariable Long fileId,
+            @RequestParam("keys") MultipartFile keys,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        try (Reader reader = new InputStreamReader(keys.getInputStream(), StandardCharsets.UTF_8)) {
+            return ResponseEntity.ok(validationService.validateUpload(fileId, reader, page, size));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/api/compare/{uniqueKey}")
+    @ResponseBody
+    public ResponseEntity<?> compareRecords(@PathVariable String uniqueKey,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            Map<String, Object> comparison = validationService.compareRecords(uniqueKey, limit);
+            return ResponseEntity.ok(comparison);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * CSV report of what changed from one upload to another, streamed to the
+     * client as it is computed.
+     */
+    @GetMapping("/api/diff")
+    public ResponseEntity<StreamingResponseBody> diffUploads(@RequestParam Long from, @RequestParam Long to) {
+        if (!uploadedFileRepository.existsById(from) || !uploadedFileRepository.existsById(to)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        StreamingResponseBody body = out -> {
+            OutputStreamWriter writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            uploadDiffService.writeDiff(from, to, writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"diff-" + from + "-" + to + ".csv\"")
+                .body(body);
+    }
+
+    @GetMapping("/health")
+    @ResponseBody
+    public Map<String, String> healthCheck() {
+        return Map.of("status", "OK", "service", "CSV Uploader");
+    }
+
+    @GetMapping("/api/debug/status")
+    @ResponseBody
+    public Map<String, Object> getSystemStatus() {
+        Map<String, Object> status = new HashMap<>();
+
+        // Served from memory, rebuilt from the database at most every csv.stats.max-staleness-seconds
+        SystemStatsService.SystemStats stats = systemStatsService.current();
+        status.put("uploadedFiles", stats.uploadedFiles());
+        status.put("productsPerFile", stats.productsPerFile());
+        status.put("uniqueProducts", stats.uniqueProducts());
+        status.put("statsAgeSeconds", stats.ageSeconds());
+
+        return status;
+    }
+
+    @GetMapping("/api/debug/products/sample")
+    @ResponseBody
+    public Object getSampleProducts() {
+        return productRepository.findTop10ByOrderById();
+    }
+
+    @GetMapping("/api/debug/files")
+    @ResponseBody
+    public ResponseEntity<?> getAllFiles(@RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return uploadPage(cursor, limit);
+    }
+
+    private ResponseEntity<?> uploadPage(String cursor, Integer limit) {
+        try {
+            return ResponseEntity.ok(uploadHistoryService.page(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+}
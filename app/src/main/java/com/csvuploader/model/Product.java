@@ -5,11 +5,15 @@ import java.math.BigDecimal;
 
 @Entity
 @Table(name = "products", uniqueConstraints = {
-    @UniqueConstraint(columnNames = {"unique_key", "uploaded_file_id"})
+    @UniqueConstraint(columnNames = {"unique_key", "uploaded_file_id"}),
+    // One row per key; ProductBatchWriter.enforceUniqueKeys adds it to older databases
+    @UniqueConstraint(name = "uk_products_unique_key", columnNames = {"unique_key"})
 })
 public class Product {
+    // Pooled sequence so Hibernate can batch inserts; shared with ProductBatchWriter
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "unique_key", nullable = false)
@@ -35,6 +39,10 @@ public class Product {
     @Column(name = "piece_price", precision = 10, scale = 2)
     private BigDecimal piecePrice;
     
+    // RowHasher fingerprint of the imported columns, used to skip unchanged rows
+    @Column(name = "row_hash")
+    private Long rowHash;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "uploaded_file_id")
     private UploadedFile uploadedFile;
@@ -69,6 +77,9 @@ public class Product {
     public BigDecimal getPiecePrice() { return piecePrice; }
     public void setPiecePrice(BigDecimal piecePrice) { this.piecePrice = piecePrice; }
     
+    public Long getRowHash() { return rowHash; }
+    public void setRowHash(Long rowHash) { this.rowHash = rowHash; }
+    
     public UploadedFile getUploadedFile() { return uploadedFile; }
     public void setUploadedFile(UploadedFile uploadedFile) { this.uploadedFile = uploadedFile; }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.csvuploader.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-side view of a stored product, selected straight from the query so
+ * lookups never load entities, and immutable so it can be cached.
+ */
+public record ProductView(Long id, String uniqueKey, String productTitle, String productDescription,
+        String styleNumber, String sanmarMainframeColor, String size, String colorName, BigDecimal piecePrice,
+        Long uploadedFileId) {
+}
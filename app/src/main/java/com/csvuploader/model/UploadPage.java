@@ -0,0 +1,10 @@
+package com.csvuploader.model;
+
+import java.util.List;
+
+/**
+ * One page of upload history, newest first. nextCursor is null on the last
+ * page and otherwise goes back as ?cursor= to fetch the page after it.
+ */
+public record UploadPage(List<UploadSummary> uploads, String nextCursor) {
+}
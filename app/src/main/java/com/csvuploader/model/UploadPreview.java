@@ -0,0 +1,23 @@
+package com.csvuploader.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * What importing a file would do, worked out without writing it. Rows are
+ * counted the way the import counts them; invalidPrices and
+ * topPriceChanges are samples, the latter the largest changes first, while
+ * invalidPriceRows and priceChanges count them all.
+ */
+public record UploadPreview(String fileName, int records, int inserted, int updated, int unchanged, int skipped,
+        int invalidPriceRows, List<InvalidPrice> invalidPrices, int priceChanges,
+        List<PriceChange> topPriceChanges, long elapsedMillis) {
+
+    // A PIECE_PRICE that is not a number; the import stores the row without a price
+    public record InvalidPrice(int record, String uniqueKey, String value) {
+    }
+
+    // change is newPrice - oldPrice; prices added or removed only count towards priceChanges
+    public record PriceChange(String uniqueKey, BigDecimal oldPrice, BigDecimal newPrice, BigDecimal change) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.csvuploader.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Listing view of an upload: just the columns the history table shows,
+ * selected straight from the query instead of loading whole entities.
+ */
+public record UploadSummary(Long id, String fileName, String status, LocalDateTime createdAt,
+        Integer processedRows, Integer estimatedRows, String errorMessage) {
+}
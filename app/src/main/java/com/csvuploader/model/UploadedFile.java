@@ -0,0 +1,128 @@
+package com.csvuploader.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "uploaded_files", indexes = {
+    @Index(name = "idx_uploaded_files_created_at", columnList = "created_at, id"),
+    @Index(name = "idx_uploaded_files_status", columnList = "status")
+})
+public class UploadedFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String fileName;
+    
+    @Column(nullable = false)
+    private String status = "pending";
+    
+    @Column(nullable = false, unique = true)
+    private String checksum;
+    
+    private String errorMessage;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    private Integer processedRows = 0;
+    
+    // Breakdown of processedRows, plus records skipped for having no UNIQUE_KEY
+    private Integer insertedRows = 0;
+    
+    private Integer updatedRows = 0;
+    
+    private Integer unchangedRows = 0;
+    
+    private Integer skippedRows = 0;
+    
+    private String storedFilePath;
+    
+    private Integer estimatedRows;
+    
+    // Records committed so far and the position of the first uncommitted
+    // record, used to resume a failed import. The position is a character
+    // offset for commons-csv and a byte offset for the mapped reader.
+    private Integer checkpointRecord = 0;
+    
+    private Long checkpointPosition;
+    
+    // RecordReader name the upload is imported with; null means commons-csv
+    private String recordReader;
+    
+    // File profile detected on the first import and reused on resume: the
+    // delimiter, the charset name and the column each field was found at
+    private String delimiter;
+    
+    private String charset;
+    
+    @Column(length = 1000)
+    private String headerMapping;
+    
+    public UploadedFile() {}
+    
+    public UploadedFile(String fileName, String checksum) {
+        this.fileName = fileName;
+        this.checksum = checksum;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public String getChecksum() { return checksum; }
+    public void setChecksum(String checksum) { this.checksum = checksum; }
+    
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public Integer getProcessedRows() { return processedRows; }
+    public void setProcessedRows(Integer processedRows) { this.processedRows = processedRows; }
+    
+    public Integer getInsertedRows() { return insertedRows; }
+    public void setInsertedRows(Integer insertedRows) { this.insertedRows = insertedRows; }
+    
+    public Integer getUpdatedRows() { return updatedRows; }
+    public void setUpdatedRows(Integer updatedRows) { this.updatedRows = updatedRows; }
+    
+    public Integer getUnchangedRows() { return unchangedRows; }
+    public void setUnchangedRows(Integer unchangedRows) { this.unchangedRows = unchangedRows; }
+    
+    public Integer getSkippedRows() { return skippedRows; }
+    public void setSkippedRows(Integer skippedRows) { this.skippedRows = skippedRows; }
+    
+    public String getStoredFilePath() { return storedFilePath; }
+    public void setStoredFilePath(String storedFilePath) { this.storedFilePath = storedFilePath; }
+    
+    public Integer getEstimatedRows() { return estimatedRows; }
+    public void setEstimatedRows(Integer estimatedRows) { this.estimatedRows = estimatedRows; }
+    
+    public Integer getCheckpointRecord() { return checkpointRecord; }
+    public void setCheckpointRecord(Integer checkpointRecord) { this.checkpointRecord = checkpointRecord; }
+    
+    public Long getCheckpointPosition() { return checkpointPosition; }
+    public void setCheckpointPosition(Long checkpointPosition) { this.checkpointPosition = checkpointPosition; }
+    
+    public String getRecordReader() { return recordReader; }
+    public void setRecordReader(String recordReader) { this.recordReader = recordReader; }
+    
+    public String getDelimiter() { return delimiter; }
+    public void setDelimiter(String delimiter) { this.delimiter = delimiter; }
+    
+    public String getCharset() { return charset; }
+    public void setCharset(String charset) { this.charset = charset; }
+    
+    public String getHeaderMapping() { return headerMapping; }
+    public void setHeaderMapping(String headerMapping) { this.headerMapping = headerMapping; }
+}
\ No newline at end of file
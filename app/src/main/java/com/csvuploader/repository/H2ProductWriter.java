@@ -0,0 +1,78 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Default writer: a single batched MERGE keyed on the primary key for
+ * products, and a batched INSERT for versions.
+ */
+@Repository
+@Profile("!postgres")
+public class H2ProductWriter implements ProductWriter {
+
+    private static final String MERGE = "MERGE INTO products (" + ProductBatchWriter.COLUMNS + ") KEY (id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String VERSION_INSERT = "INSERT INTO product_versions (" +
+            ProductBatchWriter.VERSION_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertProducts(List<Product> rows, Long uploadedFileId) {
+        jdbcTemplate.batchUpdate(MERGE, rows, rows.size(), (ps, product) -> {
+            ps.setLong(1, product.getId());
+            bindFields(ps, 2, product, uploadedFileId);
+        });
+    }
+
+    @Override
+    public void appendVersions(Collection<Product> products, Long uploadedFileId, LocalDateTime createdAt) {
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        jdbcTemplate.batchUpdate(VERSION_INSERT, products, products.size(), (ps, product) -> {
+            bindFields(ps, 1, product, uploadedFileId);
+            ps.setTimestamp(11, timestamp);
+        });
+    }
+
+    @Override
+    public long nextSequenceValue() {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR products_seq", Long.class);
+    }
+
+    @Override
+    public void restartSequence(long value) {
+        jdbcTemplate.execute("ALTER SEQUENCE products_seq RESTART WITH " + value);
+    }
+
+    // Binds the ten columns shared by products and product_versions, from unique_key to row_hash
+    private void bindFields(PreparedStatement ps, int first, Product product, Long uploadedFileId) throws SQLException {
+        ps.setString(first, product.getUniqueKey());
+        ps.setString(first + 1, product.getProductTitle());
+        ps.setString(first + 2, product.getProductDescription());
+        ps.setString(first + 3, product.getStyleNumber());
+        ps.setString(first + 4, product.getSanmarMainframeColor());
+        ps.setString(first + 5, product.getSize());
+        ps.setString(first + 6, product.getColorName());
+        if (product.getPiecePrice() != null) {
+            ps.setBigDecimal(first + 7, product.getPiecePrice());
+        } else {
+            ps.setNull(first + 7, Types.DECIMAL);
+        }
+        ps.setLong(first + 8, uploadedFileId);
+        ps.setLong(first + 9, product.getRowHash());
+    }
+}
@@ -0,0 +1,126 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.Product;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * PostgreSQL writer. Products are streamed with COPY into a session-local
+ * staging table and moved into products with one set-based INSERT ... ON
+ * CONFLICT per chunk; versions are copied straight into product_versions.
+ * COPY skips per-row statement parsing and binding, which is where the
+ * batched path spends most of its time. Must run inside the chunk
+ * transaction so that COPY and INSERT share the connection that owns the
+ * temporary table.
+ */
+@Repository
+@Profile("postgres")
+public class PostgresProductWriter implements ProductWriter {
+
+    private static final String CREATE_STAGING = "CREATE TEMP TABLE IF NOT EXISTS product_staging " +
+            "(LIKE products INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+
+    private static final String COPY_STAGING = "COPY product_staging (" + ProductBatchWriter.COLUMNS + ") " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    private static final String UPSERT_FROM_STAGING = "INSERT INTO products (" + ProductBatchWriter.COLUMNS + ") " +
+            "SELECT " + ProductBatchWriter.COLUMNS + " FROM product_staging ON CONFLICT (id) DO UPDATE SET " +
+            "unique_key = EXCLUDED.unique_key, product_title = EXCLUDED.product_title, " +
+            "product_description = EXCLUDED.product_description, style_number = EXCLUDED.style_number, " +
+            "sanmar_mainframe_color = EXCLUDED.sanmar_mainframe_color, size = EXCLUDED.size, " +
+            "color_name = EXCLUDED.color_name, piece_price = EXCLUDED.piece_price, " +
+            "uploaded_file_id = EXCLUDED.uploaded_file_id, row_hash = EXCLUDED.row_hash";
+
+    private static final String COPY_VERSIONS = "COPY product_versions (" + ProductBatchWriter.VERSION_COLUMNS +
+            ") FROM STDIN WITH (FORMAT csv)";
+
+    // Unquoted empty fields load as NULL, quoted ones as empty strings
+    private static final CSVFormat COPY_FORMAT = CSVFormat.POSTGRESQL_CSV;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertProducts(List<Product> rows, Long uploadedFileId) {
+        StringBuilder data = new StringBuilder(rows.size() * 128);
+        try (CSVPrinter printer = new CSVPrinter(data, COPY_FORMAT)) {
+            for (Product product : rows) {
+                printer.print(product.getId());
+                printFields(printer, product, uploadedFileId);
+                printer.println();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        jdbcTemplate.execute(CREATE_STAGING);
+        copyIn(COPY_STAGING, data);
+        jdbcTemplate.update(UPSERT_FROM_STAGING);
+        // The staging rows would otherwise be merged again by a later chunk of
+        // the same transaction
+        jdbcTemplate.execute("TRUNCATE product_staging");
+    }
+
+    @Override
+    public void appendVersions(Collection<Product> products, Long uploadedFileId, LocalDateTime createdAt) {
+        StringBuilder data = new StringBuilder(products.size() * 128);
+        try (CSVPrinter printer = new CSVPrinter(data, COPY_FORMAT)) {
+            for (Product product : products) {
+                printFields(printer, product, uploadedFileId);
+                printer.print(createdAt);
+                printer.println();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        copyIn(COPY_VERSIONS, data);
+    }
+
+    @Override
+    public long nextSequenceValue() {
+        return jdbcTemplate.queryForObject("SELECT nextval('products_seq')", Long.class);
+    }
+
+    @Override
+    public void restartSequence(long value) {
+        jdbcTemplate.queryForObject("SELECT setval('products_seq', ?, false)", Long.class, value);
+    }
+
+    // The ten columns shared by products and product_versions, from unique_key to row_hash
+    private void printFields(CSVPrinter printer, Product product, Long uploadedFileId) throws IOException {
+        printer.print(product.getUniqueKey());
+        printer.print(product.getProductTitle());
+        printer.print(product.getProductDescription());
+        printer.print(product.getStyleNumber());
+        printer.print(product.getSanmarMainframeColor());
+        printer.print(product.getSize());
+        printer.print(product.getColorName());
+        printer.print(product.getPiecePrice() != null ? product.getPiecePrice().toPlainString() : null);
+        printer.print(uploadedFileId);
+        printer.print(product.getRowHash());
+    }
+
+    // Runs on the connection of the current transaction
+    private void copyIn(String sql, CharSequence data) {
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn(sql, new StringReader(data.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
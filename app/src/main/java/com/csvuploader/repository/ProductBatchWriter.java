@@ -0,0 +1,253 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC bulk upsert path for products. Existing ids and row hashes are
+ * resolved from the in-memory ProductKeyIndex, or with one IN query per
+ * batch while it is not available, unchanged rows are dropped, and the
+ * rest are handed to the active ProductWriter, which writes them keyed on the
+ * primary key: a batched MERGE on H2, COPY plus INSERT ... ON CONFLICT on
+ * PostgreSQL. Every accepted row, unchanged or not, is also appended to
+ * product_versions.
+ */
+@Repository
+public class ProductBatchWriter {
+
+    // Must match the allocationSize of the sequence generator on Product
+    public static final int ID_BLOCK_SIZE = 50;
+
+    // Declared on Product as well, which adds it whenever the rows allow
+    static final String UNIQUE_KEY_CONSTRAINT = "uk_products_unique_key";
+
+    static final String COLUMNS = "id, unique_key, product_title, product_description, style_number, " +
+            "sanmar_mainframe_color, size, color_name, piece_price, uploaded_file_id, row_hash";
+
+    static final String VERSION_COLUMNS = "unique_key, product_title, product_description, style_number, " +
+            "sanmar_mainframe_color, size, color_name, piece_price, uploaded_file_id, row_hash, created_at";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private ProductWriter productWriter;
+
+    @Autowired
+    private ProductKeyIndex productKeyIndex;
+
+    private long nextId;
+    private long maxId;
+    private boolean sequenceAligned;
+
+    /**
+     * Result of one batch write. Every product handed in is counted once:
+     * inserted for new keys, updated when the stored row hash differs (or a
+     * later row in the same batch replaced it), unchanged otherwise.
+     * replacedByFile counts the stored rows that were overwritten, by the
+     * upload they belonged to until now. writtenKeys are the keys whose
+     * stored row was inserted or overwritten.
+     */
+    public record BatchResult(int inserted, int updated, int unchanged, Map<Long, Integer> replacedByFile,
+            List<String> writtenKeys) {
+    }
+
+    /**
+     * Id, row hash and owning upload of the stored product for a key.
+     */
+    public record ExistingRow(long id, Long rowHash, Long uploadedFileId) {
+    }
+
+    public Map<String, ExistingRow> findExistingRows(Collection<String> uniqueKeys) {
+        Map<String, ExistingRow> rows = new HashMap<>();
+        if (uniqueKeys.isEmpty()) {
+            return rows;
+        }
+        namedParameterJdbcTemplate.query(
+                "SELECT id, unique_key, row_hash, uploaded_file_id FROM products WHERE unique_key IN (:keys)",
+                new MapSqlParameterSource("keys", uniqueKeys),
+                rs -> {
+                    // Keep the newest row if legacy data holds duplicates for a key
+                    ExistingRow row = new ExistingRow(rs.getLong(1), rs.getObject(3, Long.class),
+                            rs.getObject(4, Long.class));
+                    rows.merge(rs.getString(2), row, (a, b) -> a.id() >= b.id() ? a : b);
+                });
+        return rows;
+    }
+
+    /**
+     * Stored rows of the keys, from the key index while it is loaded and
+     * from the database otherwise.
+     */
+    public Map<String, ExistingRow> lookupExistingRows(Collection<String> uniqueKeys) {
+        Map<String, ExistingRow> rows = productKeyIndex.lookup(uniqueKeys);
+        return rows != null ? rows : findExistingRows(uniqueKeys);
+    }
+
+    // Stored piece prices by product id; ids without a price are left out
+    public Map<Long, BigDecimal> findPiecePrices(Collection<Long> ids) {
+        Map<Long, BigDecimal> prices = new HashMap<>();
+        if (ids.isEmpty()) {
+            return prices;
+        }
+        namedParameterJdbcTemplate.query(
+                "SELECT id, piece_price FROM products WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    BigDecimal price = rs.getBigDecimal(2);
+                    if (price != null) {
+                        prices.put(rs.getLong(1), price);
+                    }
+                });
+        return prices;
+    }
+
+    /**
+     * Upserts one batch of products whose row hash is already set. Duplicate
+     * keys inside the batch collapse to the last occurrence, and rows whose
+     * hash matches the stored one are not written at all.
+     */
+    public BatchResult upsert(List<Product> products, Long uploadedFileId) {
+        return upsert(products, uploadedFileId, false);
+    }
+
+    /**
+     * Same as above; with fromDatabase the stored rows are read from the
+     * table rather than the key index, which may not have caught up with an
+     * import that committed moments ago. Rows are still written keyed on the
+     * id, so a key another import inserted meanwhile fails on the unique
+     * constraint rather than being silently re-keyed.
+     */
+    public BatchResult upsert(List<Product> products, Long uploadedFileId, boolean fromDatabase) {
+        if (products.isEmpty()) {
+            return new BatchResult(0, 0, 0, Map.of(), List.of());
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        Map<String, Product> byKey = new LinkedHashMap<>();
+        for (Product product : products) {
+            Product replaced = byKey.put(product.getUniqueKey(), product);
+            if (replaced != null) {
+                if (replaced.getRowHash().equals(product.getRowHash())) {
+                    unchanged++;
+                } else {
+                    updated++;
+                }
+            }
+        }
+
+        Map<String, ExistingRow> existingRows = fromDatabase
+                ? findExistingRows(byKey.keySet()) : lookupExistingRows(byKey.keySet());
+        Map<Long, Integer> replacedByFile = new HashMap<>();
+        List<Product> rows = new ArrayList<>(byKey.size());
+        for (Product product : byKey.values()) {
+            ExistingRow existing = existingRows.get(product.getUniqueKey());
+            if (existing == null) {
+                product.setId(allocateId());
+                inserted++;
+            } else if (product.getRowHash().equals(existing.rowHash())) {
+                unchanged++;
+                continue;
+            } else {
+                product.setId(existing.id());
+                replacedByFile.merge(existing.uploadedFileId(), 1, Integer::sum);
+                updated++;
+            }
+            rows.add(product);
+        }
+
+        if (!rows.isEmpty()) {
+            productWriter.upsertProducts(rows, uploadedFileId);
+            productKeyIndex.recordWritten(rows, uploadedFileId);
+        }
+        productWriter.appendVersions(byKey.values(), uploadedFileId, LocalDateTime.now());
+
+        List<String> writtenKeys = new ArrayList<>(rows.size());
+        for (Product row : rows) {
+            writtenKeys.add(row.getUniqueKey());
+        }
+        return new BatchResult(inserted, updated, unchanged, replacedByFile, writtenKeys);
+    }
+
+    /**
+     * Seeds product_versions from the current products once, for catalogs
+     * imported before the history existed. Each row becomes a version dated
+     * by its upload. Returns the number of versions written.
+     */
+    public int backfillVersions() {
+        Integer versions = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_versions", Integer.class);
+        if (versions != null && versions > 0) {
+            return 0;
+        }
+        return jdbcTemplate.update("INSERT INTO product_versions (" + VERSION_COLUMNS + ") " +
+                "SELECT p.unique_key, p.product_title, p.product_description, p.style_number, " +
+                "p.sanmar_mainframe_color, p.size, p.color_name, p.piece_price, p.uploaded_file_id, p.row_hash, " +
+                "u.created_at FROM products p JOIN uploaded_files u ON u.id = p.uploaded_file_id");
+    }
+
+    /**
+     * Gives databases created before unique_key was unique their unique
+     * constraint, first deleting all but the newest row of every duplicated
+     * key. Returns the number of rows deleted.
+     */
+    public int enforceUniqueKeys() {
+        Integer constraints = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.table_constraints " +
+                "WHERE LOWER(constraint_name) = ?", Integer.class, UNIQUE_KEY_CONSTRAINT);
+        if (constraints != null && constraints > 0) {
+            return 0;
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM products p WHERE EXISTS " +
+                "(SELECT 1 FROM products q WHERE q.unique_key = p.unique_key AND q.id > p.id)");
+        jdbcTemplate.execute("ALTER TABLE products ADD CONSTRAINT " + UNIQUE_KEY_CONSTRAINT + " UNIQUE (unique_key)");
+        return deleted;
+    }
+
+    /**
+     * Hands out ids from the shared products sequence using the same block
+     * semantics as Hibernate's pooled optimizer: a sequence value v reserves
+     * the ids (v - 50, v], so JDBC and JPA inserts never collide.
+     */
+    private synchronized long allocateId() {
+        if (!sequenceAligned) {
+            alignSequenceWithExistingIds();
+            sequenceAligned = true;
+        }
+        if (nextId == 0 || nextId > maxId) {
+            long value = productWriter.nextSequenceValue();
+            maxId = value;
+            nextId = Math.max(1, value - ID_BLOCK_SIZE + 1);
+        }
+        return nextId++;
+    }
+
+    // Databases created before the sequence generator hold identity ids the
+    // fresh sequence knows nothing about, so move the sequence past them once.
+    private void alignSequenceWithExistingIds() {
+        Long currentMax = jdbcTemplate.queryForObject("SELECT MAX(id) FROM products", Long.class);
+        if (currentMax == null) {
+            return;
+        }
+        long value = productWriter.nextSequenceValue();
+        if (value - ID_BLOCK_SIZE < currentMax) {
+            productWriter.restartSequence(currentMax + ID_BLOCK_SIZE + 1);
+        }
+    }
+}
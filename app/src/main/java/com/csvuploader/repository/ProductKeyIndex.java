@@ -0,0 +1,484 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.Product;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Id, row hash and owning upload of every stored unique_key, held in memory
+ * so the upsert resolves a batch without querying products. It is loaded
+ * once the application is ready and then kept current by the upsert itself,
+ * applying each written batch after its transaction commits, in commit
+ * order; until it is
+ * loaded, or when it is off, lookups return null and the caller queries the
+ * database instead. The index assumes products only change through this
+ * application: rows changed behind its back need a call to build().
+ *
+ * Keys are stored as 95-bit fingerprints in a primitive open-addressing
+ * table of 32 bytes per slot, fronted by a blocked bloom filter of one byte
+ * per slot, so a key that was never stored is usually answered from one
+ * cache line. The table is kept between half and three quarters full: a
+ * million keys take 44 to 66 MB. It holds at most csv.key-index.max-keys
+ * keys and never more than an eighth of the heap; past that it turns itself
+ * off until the next build.
+ */
+@Repository
+public class ProductKeyIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductKeyIndex.class);
+
+    private static final int FETCH_SIZE = 1000;
+
+    // The index may take at most 1/HEAP_SHARE of the maximum heap
+    private static final int HEAP_SHARE = 8;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${csv.key-index.max-keys:2000000}")
+    private long maxKeys;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private int keyLimit;
+
+    // Guarded by this: table is null while loading or when off, pending
+    // collects the batches committed while a build is loading
+    private KeyTable table;
+    private List<Consumer<KeyTable>> pending;
+
+    // Held by a transaction with index changes from just before its commit
+    // until they are applied. Imports writing the same row commit in turn
+    // (the row lock sees to that), so the index applies their changes in
+    // that order too and ends up with the row hash that was committed last.
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE);
+        long heapKeys = Runtime.getRuntime().maxMemory() / HEAP_SHARE / KeyTable.MAX_BYTES_PER_KEY;
+        keyLimit = (int) Math.min(Math.min(maxKeys, heapKeys), KeyTable.MAX_KEYS);
+    }
+
+    /**
+     * Loads the index from products, replacing whatever it held. Batches
+     * committed while it loads are applied on top once it is done.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (keyLimit <= 0) {
+            log.info("Key index is off (csv.key-index.max-keys=0), unique_key lookups stay in the database");
+            return;
+        }
+        synchronized (this) {
+            table = null;
+            pending = new ArrayList<>();
+        }
+
+        long start = System.nanoTime();
+        KeyTable loaded = null;
+        try {
+            loaded = load();
+        } catch (RuntimeException e) {
+            log.warn("Could not load the key index, unique_key lookups stay in the database", e);
+        }
+
+        synchronized (this) {
+            if (loaded != null) {
+                for (Consumer<KeyTable> change : pending) {
+                    change.accept(loaded);
+                }
+                table = usable(loaded) ? loaded : null;
+            }
+            pending = null;
+            if (table != null) {
+                log.info("Key index loaded {} keys in {} ms, {} MB", table.size(),
+                        (System.nanoTime() - start) / 1_000_000, table.bytes() / (1024 * 1024));
+            }
+        }
+    }
+
+    /**
+     * The stored rows for keys, absent keys left out, or null when the index
+     * is not available and the database has to be asked.
+     */
+    public Map<String, ProductBatchWriter.ExistingRow> lookup(Collection<String> keys) {
+        String[] keyArray = keys.toArray(new String[0]);
+        long[] hashes = new long[keyArray.length];
+        long[] checks = new long[keyArray.length];
+        for (int i = 0; i < keyArray.length; i++) {
+            hashes[i] = KeyTable.hash(keyArray[i]);
+            checks[i] = KeyTable.check(keyArray[i]);
+        }
+
+        Map<String, ProductBatchWriter.ExistingRow> rows = new HashMap<>();
+        synchronized (this) {
+            if (table == null) {
+                return null;
+            }
+            for (int i = 0; i < keyArray.length; i++) {
+                ProductBatchWriter.ExistingRow row = table.get(hashes[i], checks[i]);
+                if (row != null) {
+                    rows.put(keyArray[i], row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Records rows written by the current transaction once it commits, so a
+     * rolled back batch never reaches the index. Every row has its id and
+     * row hash set.
+     */
+    public void recordWritten(List<Product> rows, Long uploadedFileId) {
+        long[] hashes = new long[rows.size()];
+        long[] checks = new long[rows.size()];
+        long[] ids = new long[rows.size()];
+        long[] rowHashes = new long[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Product product = rows.get(i);
+            hashes[i] = KeyTable.hash(product.getUniqueKey());
+            checks[i] = KeyTable.check(product.getUniqueKey());
+            ids[i] = product.getId();
+            rowHashes[i] = product.getRowHash();
+        }
+        afterCommit(index -> {
+            for (int i = 0; i < hashes.length; i++) {
+                index.put(hashes[i], checks[i], ids[i], rowHashes[i], uploadedFileId);
+            }
+        });
+    }
+
+    // For the products of an upload deleted before it is imported again
+    public void removeUpload(Long uploadedFileId) {
+        afterCommit(index -> index.removeUpload(uploadedFileId));
+    }
+
+    public synchronized boolean isLoaded() {
+        return table != null;
+    }
+
+    private void afterCommit(Consumer<KeyTable> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change);
+            return;
+        }
+        CommittedChanges changes = (CommittedChanges) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new CommittedChanges();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        changes.changes.add(change);
+    }
+
+    // The index changes of one transaction, applied once it commits
+    private final class CommittedChanges implements TransactionSynchronization {
+
+        private final List<Consumer<KeyTable>> changes = new ArrayList<>();
+        private boolean locked;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commitLock.lock();
+            locked = true;
+        }
+
+        @Override
+        public void afterCommit() {
+            for (Consumer<KeyTable> change : changes) {
+                apply(change);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ProductKeyIndex.this);
+            if (locked) {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    private synchronized void apply(Consumer<KeyTable> change) {
+        if (pending != null) {
+            pending.add(change);
+        } else if (table != null) {
+            change.accept(table);
+            if (!usable(table)) {
+                table = null;
+            }
+        }
+    }
+
+    private KeyTable load() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Long.class);
+        if (count != null && count > keyLimit) {
+            log.info("products holds {} rows, more than the {} the key index may take; " +
+                    "unique_key lookups stay in the database", count, keyLimit);
+            return null;
+        }
+        // Room for a quarter more keys before the first resize
+        long expected = count == null ? 0 : count + count / 4;
+        KeyTable loaded = new KeyTable((int) Math.min(expected, keyLimit), keyLimit);
+        jdbcTemplate.query("SELECT id, unique_key, row_hash, uploaded_file_id FROM products", rs -> {
+            String key = rs.getString(2);
+            loaded.put(KeyTable.hash(key), KeyTable.check(key), rs.getLong(1), rs.getObject(3, Long.class),
+                    rs.getObject(4, Long.class));
+        });
+        return loaded;
+    }
+
+    // Caller holds the monitor
+    private boolean usable(KeyTable index) {
+        if (index.isOverflowed()) {
+            log.warn("More than {} keys, the key index is off until the next build; " +
+                    "unique_key lookups stay in the database", keyLimit);
+            return false;
+        }
+        if (index.duplicates() > 0) {
+            // One id per key is all the table holds
+            log.warn("products holds {} keys stored more than once, the key index is off until the next build",
+                    index.duplicates());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Open-addressing table with linear probing over one long[], four longs
+     * per slot: key hash, id, row hash, and a word packing the upper 31 bits
+     * of a second key hash, a null row hash flag and the upload id. A zero id
+     * marks an empty slot. Not thread safe.
+     */
+    static final class KeyTable {
+
+        static final int MAX_BYTES_PER_KEY = 44;
+
+        // Ids of uploads must fit the lower 32 bits of the packed word
+        static final long MAX_UPLOAD_ID = 0xFFFFFFFFL;
+
+        static final int MAX_KEYS = 300_000_000;
+
+        private static final int LONGS_PER_SLOT = 4;
+        private static final double MAX_LOAD = 0.75;
+        private static final long NULL_ROW_HASH = 1L << 32;
+
+        // 512-bit blocks, seven 9-bit positions per key
+        private static final int BLOCK_LONGS = 8;
+        private static final int BLOOM_BITS = 7;
+
+        private final int maxKeys;
+        private long[] slots;
+        private long[] bloom;
+        private int capacity;
+        private int blocks;
+        private int size;
+        private int duplicates;
+        private boolean overflowed;
+
+        KeyTable(int expectedKeys, int maxKeys) {
+            this.maxKeys = maxKeys;
+            allocate(capacityFor(Math.max(expectedKeys, 64)));
+        }
+
+        static long hash(String key) {
+            // FNV-1a over the UTF-16 code units
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        // A second, independent 31-bit hash told apart from collisions of the first
+        static long check(String key) {
+            long hash = key.length();
+            for (int i = 0; i < key.length(); i++) {
+                hash = hash * 0x9e3779b97f4a7c15L + key.charAt(i);
+            }
+            return mix(hash) >>> 33;
+        }
+
+        // Finalizer of MurmurHash3
+        private static long mix(long z) {
+            z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+            z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return z ^ (z >>> 33);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int duplicates() {
+            return duplicates;
+        }
+
+        boolean isOverflowed() {
+            return overflowed;
+        }
+
+        long bytes() {
+            return (long) slots.length * Long.BYTES + (long) bloom.length * Long.BYTES;
+        }
+
+        ProductBatchWriter.ExistingRow get(long hash, long check) {
+            if (!mightContain(hash)) {
+                return null;
+            }
+            int slot = find(hash, check);
+            if (slot < 0) {
+                return null;
+            }
+            int base = slot * LONGS_PER_SLOT;
+            long packed = slots[base + 3];
+            long uploadId = packed & MAX_UPLOAD_ID;
+            return new ProductBatchWriter.ExistingRow(slots[base + 1],
+                    (packed & NULL_ROW_HASH) != 0 ? null : slots[base + 2], uploadId == 0 ? null : uploadId);
+        }
+
+        /**
+         * Stores a key's row. A key already stored under another id keeps the
+         * newest (highest) one and counts as a duplicate.
+         */
+        void put(long hash, long check, long id, Long rowHash, Long uploadId) {
+            if (overflowed) {
+                return;
+            }
+            if (uploadId != null && (uploadId <= 0 || uploadId > MAX_UPLOAD_ID)) {
+                // No room for it in the packed word
+                overflowed = true;
+                return;
+            }
+            int slot = find(hash, check);
+            if (slot >= 0) {
+                int base = slot * LONGS_PER_SLOT;
+                if (slots[base + 1] != id) {
+                    duplicates++;
+                    if (slots[base + 1] > id) {
+                        return;
+                    }
+                }
+                write(base, hash, check, id, rowHash, uploadId);
+                return;
+            }
+
+            if (size >= maxKeys) {
+                overflowed = true;
+                return;
+            }
+            if (size + 1 > capacity * MAX_LOAD) {
+                int grown = (int) Math.min(capacity + (long) capacity / 2, capacityFor(maxKeys));
+                rehash(Math.max(grown, capacityFor(size + 1)), 0);
+                slot = find(hash, check);
+            }
+            write((-slot - 1) * LONGS_PER_SLOT, hash, check, id, rowHash, uploadId);
+            addToBloom(hash);
+            size++;
+        }
+
+        // Rebuilds the table without the rows of the upload, which also
+        // clears their bits from the bloom filter
+        void removeUpload(long uploadId) {
+            rehash(capacity, uploadId);
+        }
+
+        private void write(int base, long hash, long check, long id, Long rowHash, Long uploadId) {
+            slots[base] = hash;
+            slots[base + 1] = id;
+            slots[base + 2] = rowHash == null ? 0 : rowHash;
+            slots[base + 3] = check << 33 | (rowHash == null ? NULL_ROW_HASH : 0) | (uploadId == null ? 0 : uploadId);
+        }
+
+        // The slot holding the key, or -(free slot) - 1 where it would go
+        private int find(long hash, long check) {
+            int slot = (int) (((hash >>> 32) * capacity) >>> 32);
+            while (true) {
+                int base = slot * LONGS_PER_SLOT;
+                if (slots[base + 1] == 0) {
+                    return -slot - 1;
+                }
+                if (slots[base] == hash && slots[base + 3] >>> 33 == check) {
+                    return slot;
+                }
+                if (++slot == capacity) {
+                    slot = 0;
+                }
+            }
+        }
+
+        private boolean mightContain(long hash) {
+            int block = bloomBlock(hash);
+            long bits = mix(hash + 0x9e3779b97f4a7c15L);
+            for (int i = 0; i < BLOOM_BITS; i++) {
+                int bit = (int) (bits >>> (i * 9)) & 511;
+                if ((bloom[block + (bit >>> 6)] & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addToBloom(long hash) {
+            int block = bloomBlock(hash);
+            long bits = mix(hash + 0x9e3779b97f4a7c15L);
+            for (int i = 0; i < BLOOM_BITS; i++) {
+                int bit = (int) (bits >>> (i * 9)) & 511;
+                bloom[block + (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        // The slot comes from the upper half of the hash, the block from the lower
+        private int bloomBlock(long hash) {
+            return (int) (((hash & 0xFFFFFFFFL) * blocks) >>> 32) * BLOCK_LONGS;
+        }
+
+        private void rehash(int newCapacity, long droppedUploadId) {
+            long[] old = slots;
+            allocate(newCapacity);
+            size = 0;
+            for (int base = 0; base < old.length; base += LONGS_PER_SLOT) {
+                if (old[base + 1] == 0 || (droppedUploadId != 0 && (old[base + 3] & MAX_UPLOAD_ID) == droppedUploadId)) {
+                    continue;
+                }
+                int slot = -find(old[base], old[base + 3] >>> 33) - 1;
+                System.arraycopy(old, base, slots, slot * LONGS_PER_SLOT, LONGS_PER_SLOT);
+                addToBloom(old[base]);
+                size++;
+            }
+        }
+
+        private void allocate(int newCapacity) {
+            capacity = newCapacity;
+            slots = new long[capacity * LONGS_PER_SLOT];
+            // One byte of filter per slot: 8 bits per slot, 10.7 per key when the table is fullest
+            blocks = Math.max(1, capacity / (BLOCK_LONGS * Long.BYTES));
+            bloom = new long[blocks * BLOCK_LONGS];
+        }
+
+        private static int capacityFor(int keys) {
+            return (int) Math.ceil(keys / MAX_LOAD) + 1;
+        }
+    }
+}
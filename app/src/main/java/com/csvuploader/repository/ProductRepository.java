@@ -1,12 +1,14 @@
 package com.csvuploader.repository;
 
 import com.csvuploader.model.Product;
+import com.csvuploader.model.ProductView;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,13 +21,25 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     @Modifying
     @Query("DELETE FROM Product p WHERE p.uploadedFile.id = :fileId")
-    void deleteByUploadedFileId(@Param("fileId") Long fileId);
+    int deleteByUploadedFileId(@Param("fileId") Long fileId);
 
     List<Product> findByUploadedFileId(Long uploadedFileId);
 
+    List<Product> findTop5ByUploadedFileIdOrderById(Long uploadedFileId);
+
+    @Query("SELECT new com.csvuploader.model.ProductView(p.id, p.uniqueKey, p.productTitle, p.productDescription, " +
+           "p.styleNumber, p.sanmarMainframeColor, p.size, p.colorName, p.piecePrice, p.uploadedFile.id) " +
+           "FROM Product p WHERE p.uniqueKey IN :keys")
+    List<ProductView> findViewsByUniqueKeyIn(@Param("keys") Collection<String> keys);
+
     @Query("SELECT COUNT(p) FROM Product p WHERE p.uploadedFile.id = :fileId")
     Long countByUploadedFileId(@Param("fileId") Long fileId);
 
+    // Every upload with its product count in one GROUP BY: id, file name, count
+    @Query("SELECT u.id, u.fileName, COUNT(p.id) FROM UploadedFile u LEFT JOIN Product p ON p.uploadedFile = u " +
+           "GROUP BY u.id, u.fileName")
+    List<Object[]> countProductsPerFile();
+
     // ADD THESE METHODS for debugging
     @Query("SELECT COUNT(DISTINCT p.uniqueKey) FROM Product p")
     Long countDistinctUniqueKey();
@@ -0,0 +1,61 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.ProductView;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Streams the current products in id order for exports. Rows come through a
+ * forward-only cursor in fetch-size pages and are mapped straight to
+ * ProductView, with no persistence context holding on to them; callers must
+ * close the stream inside a transaction (PostgreSQL only streams there).
+ */
+@Repository
+public class ProductScanner {
+
+    // Rows are narrow, so larger pages cost little memory and save round trips
+    private static final int FETCH_SIZE = 5000;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void init() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    /**
+     * The products matching both filters; a null filter matches everything.
+     */
+    public Stream<ProductView> streamProducts(String styleNumber, Long uploadedFileId) {
+        StringBuilder sql = new StringBuilder("SELECT id, unique_key, product_title, product_description, " +
+                "style_number, sanmar_mainframe_color, size, color_name, piece_price, uploaded_file_id " +
+                "FROM products WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (styleNumber != null) {
+            sql.append(" AND style_number = ?");
+            args.add(styleNumber);
+        }
+        if (uploadedFileId != null) {
+            sql.append(" AND uploaded_file_id = ?");
+            args.add(uploadedFileId);
+        }
+        sql.append(" ORDER BY id");
+
+        return jdbcTemplate.queryForStream(sql.toString(),
+                (rs, rowNum) -> new ProductView(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                        rs.getString(5), rs.getString(6), rs.getString(7), rs.getString(8), rs.getBigDecimal(9),
+                        rs.getObject(10, Long.class)),
+                args.toArray());
+    }
+}
@@ -0,0 +1,37 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.ProductVersion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductVersionRepository extends JpaRepository<ProductVersion, Long> {
+
+    // Newest first, one range read on the (unique_key, created_at, id) index;
+    // the upload is fetched in the same query
+    @Query("SELECT v FROM ProductVersion v JOIN FETCH v.uploadedFile " +
+           "WHERE v.uniqueKey = :uniqueKey ORDER BY v.createdAt DESC, v.id DESC")
+    List<ProductVersion> findHistory(@Param("uniqueKey") String uniqueKey, Pageable pageable);
+
+    @Query("SELECT COUNT(v) FROM ProductVersion v WHERE v.uniqueKey = :uniqueKey")
+    long countByUniqueKey(@Param("uniqueKey") String uniqueKey);
+
+    // Keys an upload delivered, unchanged rows included, on the (uploaded_file_id, unique_key) index
+    @Query("SELECT DISTINCT v.uniqueKey FROM ProductVersion v WHERE v.uploadedFile.id = :fileId " +
+           "AND v.uniqueKey IN :keys")
+    List<String> findUploadedUniqueKeys(@Param("fileId") Long fileId, @Param("keys") Collection<String> keys);
+
+    @Query("SELECT COUNT(DISTINCT v.uniqueKey) FROM ProductVersion v WHERE v.uploadedFile.id = :fileId")
+    long countUniqueKeysByUploadedFileId(@Param("fileId") Long fileId);
+
+    @Modifying
+    @Query("DELETE FROM ProductVersion v WHERE v.uploadedFile.id = :fileId")
+    int deleteByUploadedFileId(@Param("fileId") Long fileId);
+}
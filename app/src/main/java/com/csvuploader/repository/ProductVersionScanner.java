@@ -0,0 +1,70 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.service.ColumnMapping.Column;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Streams the versions one upload wrote, ordered by unique_key, for
+ * merge-joining two uploads. Rows come through a forward-only cursor in
+ * fetch-size pages, so neither side is ever held in memory; callers must
+ * close the stream inside a transaction (PostgreSQL only streams there).
+ */
+@Repository
+public class ProductVersionScanner {
+
+    // The imported columns after UNIQUE_KEY, in the order of VersionRow.values
+    public static final List<Column> FIELDS = List.of(Column.PRODUCT_TITLE, Column.PRODUCT_DESCRIPTION,
+            Column.STYLE_NUMBER, Column.SANMAR_MAINFRAME_COLOR, Column.SIZE, Column.COLOR_NAME, Column.PIECE_PRICE);
+
+    private static final int FETCH_SIZE = 1000;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private String orderBy;
+
+    @PostConstruct
+    void init() throws SQLException {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE);
+        try (Connection connection = dataSource.getConnection()) {
+            // The merge compares keys with String.compareTo, so the database
+            // must sort by code point rather than by locale
+            boolean postgres = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
+            orderBy = postgres ? "unique_key COLLATE \"C\", id" : "unique_key, id";
+        }
+    }
+
+    /**
+     * One stored version; values holds FIELDS in order, prices as plain
+     * decimal strings.
+     */
+    public record VersionRow(String uniqueKey, Long rowHash, String[] values) {
+    }
+
+    public Stream<VersionRow> streamByUpload(Long uploadedFileId) {
+        return jdbcTemplate.queryForStream(
+                "SELECT unique_key, row_hash, product_title, product_description, style_number, " +
+                        "sanmar_mainframe_color, size, color_name, piece_price FROM product_versions " +
+                        "WHERE uploaded_file_id = ? ORDER BY " + orderBy,
+                (rs, rowNum) -> {
+                    BigDecimal price = rs.getBigDecimal(9);
+                    return new VersionRow(rs.getString(1), rs.getObject(2, Long.class), new String[]{
+                            rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6),
+                            rs.getString(7), rs.getString(8), price != null ? price.toPlainString() : null});
+                },
+                uploadedFileId);
+    }
+}
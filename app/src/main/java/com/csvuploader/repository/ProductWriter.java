@@ -0,0 +1,33 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.Product;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Database specific half of the product upsert. ProductBatchWriter decides
+ * which rows are written and with which ids; a ProductWriter gets them into
+ * products and product_versions the fastest way its database offers. One
+ * implementation is active per profile: H2ProductWriter by default,
+ * PostgresProductWriter under the postgres profile.
+ */
+public interface ProductWriter {
+
+    /**
+     * Inserts or overwrites products by id. Every row has its id and row
+     * hash set, and no key appears twice.
+     */
+    void upsertProducts(List<Product> rows, Long uploadedFileId);
+
+    /**
+     * Appends one product_versions row per product, all dated createdAt.
+     */
+    void appendVersions(Collection<Product> products, Long uploadedFileId, LocalDateTime createdAt);
+
+    long nextSequenceValue();
+
+    // The next call to nextSequenceValue returns value
+    void restartSequence(long value);
+}
@@ -0,0 +1,51 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.UploadSummary;
+import com.csvuploader.model.UploadedFile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadedFileRepository extends JpaRepository<UploadedFile, Long> {
+    Optional<UploadedFile> findByChecksum(String checksum);
+    
+    // Keyset pagination over (createdAt, id), newest first; both queries are
+    // served by the created_at/id index however deep the history goes
+    @Query("SELECT new com.csvuploader.model.UploadSummary(u.id, u.fileName, u.status, u.createdAt, " +
+           "u.processedRows, u.estimatedRows, u.errorMessage) " +
+           "FROM UploadedFile u ORDER BY u.createdAt DESC, u.id DESC")
+    List<UploadSummary> findLatestSummaries(Pageable pageable);
+    
+    @Query("SELECT new com.csvuploader.model.UploadSummary(u.id, u.fileName, u.status, u.createdAt, " +
+           "u.processedRows, u.estimatedRows, u.errorMessage) " +
+           "FROM UploadedFile u WHERE u.createdAt < :createdAt OR (u.createdAt = :createdAt AND u.id < :id) " +
+           "ORDER BY u.createdAt DESC, u.id DESC")
+    List<UploadSummary> findSummariesBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                            Pageable pageable);
+    
+    List<UploadedFile> findByStatusOrderByCreatedAtDesc(String status);
+    
+    // Moves an upload from one status to the next only if it still has the first, so of
+    // concurrent requests exactly one claims it; returns 0 when it was claimed already
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadedFile u SET u.status = :to WHERE u.id = :id AND u.status = :from")
+    int claimStatus(@Param("id") Long id, @Param("from") String from, @Param("to") String to);
+    
+    @Modifying
+    @Query("UPDATE UploadedFile u SET u.checkpointRecord = :#{#file.checkpointRecord}, " +
+           "u.checkpointPosition = :#{#file.checkpointPosition}, u.processedRows = :#{#file.processedRows}, " +
+           "u.insertedRows = :#{#file.insertedRows}, u.updatedRows = :#{#file.updatedRows}, " +
+           "u.unchangedRows = :#{#file.unchangedRows}, u.skippedRows = :#{#file.skippedRows} " +
+           "WHERE u.id = :#{#file.id}")
+    void updateCheckpoint(@Param("file") UploadedFile file);
+}
\ No newline at end of file
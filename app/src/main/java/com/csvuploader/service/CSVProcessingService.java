@@ -0,0 +1,579 @@
+package com.csvuploader.service;
+
+import com.csvuploader.config.AsyncConfig;
+import com.csvuploader.model.Product;
+import com.csvuploader.model.UploadPreview;
+import com.csvuploader.model.UploadPreview.InvalidPrice;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.ProductBatchWriter;
+import com.csvuploader.repository.ProductKeyIndex;
+import com.csvuploader.repository.ProductRepository;
+import com.csvuploader.repository.ProductVersionRepository;
+import com.csvuploader.repository.UploadedFileRepository;
+import com.csvuploader.service.ColumnMapping.Column;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+@Service
+public class CSVProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(CSVProcessingService.class);
+
+    // A chunk that collides with a parallel import is rolled back and written again
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVersionRepository productVersionRepository;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private ProductBatchWriter productBatchWriter;
+
+    @Autowired
+    private ProductKeyIndex productKeyIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CatalogLock catalogLock;
+
+    @Autowired
+    private IngestionMetrics metrics;
+
+    @Autowired
+    private UploadProgressService uploadProgressService;
+
+    @Autowired
+    private SystemStatsService systemStatsService;
+
+    @Autowired
+    private ProductLookupService productLookupService;
+
+    @Autowired
+    @Qualifier(AsyncConfig.TRANSFORM_EXECUTOR)
+    private ThreadPoolTaskExecutor transformExecutor;
+
+    // Rows per batched write and per committed transaction
+    @Value("${csv.import.batch-size:1000}")
+    private int batchSize;
+
+    // Invalid prices and price changes listed by a preview
+    @Value("${csv.preview.sample-size:20}")
+    private int previewSampleSize;
+
+    // Set on shutdown; imports stop at their next chunk boundary
+    private volatile boolean stopping;
+
+    @Async(AsyncConfig.INGESTION_EXECUTOR)
+    public CompletableFuture<Void> processCsvFile(Long uploadedFileId, String filePath) {
+        UploadedFile uploadedFile = uploadedFileRepository.findById(uploadedFileId)
+                .orElseThrow(() -> new RuntimeException("Uploaded file not found"));
+        if (stopping) {
+            // Left queued; marked failed and resumable on the next startup
+            log.info("Not starting file {}, the application is shutting down", uploadedFileId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long startNanos = System.nanoTime();
+        metrics.importStarted();
+        boolean succeeded = false;
+        try {
+            uploadedFile.setStatus("processing");
+            uploadedFile.setErrorMessage(null);
+            uploadedFileRepository.save(uploadedFile);
+            uploadProgressService.publishStatus(uploadedFile);
+
+            if (isResume(uploadedFile)) {
+                log.info("Resuming file {} after record {}", uploadedFileId, uploadedFile.getCheckpointRecord());
+            } else {
+                // Clear existing products and versions for this file (for idempotent retry)
+                // The upload's keys are not known up front, so no other import may write meanwhile
+                catalogLock.withAll(() -> transactionTemplate.execute(status -> {
+                    productVersionRepository.deleteByUploadedFileId(uploadedFileId);
+                    int deleted = productRepository.deleteByUploadedFileId(uploadedFileId);
+                    if (deleted > 0) {
+                        forgetUpload(uploadedFileId);
+                    }
+                    return deleted;
+                }));
+            }
+
+            int processedRows = processCsvRecords(filePath, uploadedFile);
+
+            uploadedFile.setStatus("completed");
+            uploadedFile.setProcessedRows(processedRows);
+            uploadedFileRepository.save(uploadedFile);
+            uploadProgressService.publishStatus(uploadedFile);
+
+            // Clean up file after processing
+            fileStorageService.deleteFile(filePath);
+            succeeded = true;
+
+            log.info("Completed import of {} (file {}): {} rows", uploadedFile.getFileName(), uploadedFileId, processedRows);
+
+        } catch (Exception e) {
+            // Reload so the last committed checkpoint and counts are kept
+            uploadedFile = uploadedFileRepository.findById(uploadedFileId).orElse(uploadedFile);
+            uploadedFile.setStatus("failed");
+            uploadedFile.setErrorMessage(e.getMessage());
+            uploadedFileRepository.save(uploadedFile);
+            uploadProgressService.publishStatus(uploadedFile);
+            log.error("Import of file {} failed", uploadedFileId, e);
+        } finally {
+            metrics.importFinished(startNanos, succeeded);
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Published before the executors are shut down, so running imports
+     * stop after the chunk they are committing and queued ones do not start,
+     * well within the ingestion pool's termination wait.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stopImports() {
+        stopping = true;
+    }
+
+    /**
+     * Imports that were queued or running when the application stopped can
+     * never finish, so mark them failed on startup to make them resumable.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterruptedUploads() {
+        for (String status : List.of("queued", "processing")) {
+            for (UploadedFile uploadedFile : uploadedFileRepository.findByStatusOrderByCreatedAtDesc(status)) {
+                uploadedFile.setStatus("failed");
+                uploadedFile.setErrorMessage("Interrupted by application restart");
+                uploadedFileRepository.save(uploadedFile);
+            }
+        }
+    }
+
+    /**
+     * Older databases allowed a key once per upload; imports now keep one
+     * row per key, backed by a unique constraint. Runs before the key index
+     * loads, which would otherwise stay off over the duplicates.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void enforceUniqueKeys() {
+        Integer deleted = transactionTemplate.execute(status -> productBatchWriter.enforceUniqueKeys());
+        if (deleted != null && deleted > 0) {
+            log.info("Deleted {} older rows of duplicated keys before indexing unique_key", deleted);
+        }
+    }
+
+    /**
+     * Catalogs imported before product_versions existed get their current
+     * rows as the first versions, so every key has a history.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillProductVersions() {
+        Integer versions = transactionTemplate.execute(status -> productBatchWriter.backfillVersions());
+        if (versions != null && versions > 0) {
+            log.info("Backfilled {} product versions from the current catalog", versions);
+        }
+    }
+
+    /**
+     * Reads and maps a stored file exactly as an import would, but instead of
+     * writing each batch only looks its keys up, in bulk, to count what the
+     * import would do. Nothing is written, not even an upload record. Runs on
+     * the bounded preview pool, which rejects a preview when it is busy.
+     */
+    @Async(AsyncConfig.PREVIEW_EXECUTOR)
+    public CompletableFuture<UploadPreview> preview(String filePath, String fileName, RecordReader recordReader) {
+        try {
+            return CompletableFuture.completedFuture(runPreview(filePath, fileName, recordReader));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private UploadPreview runPreview(String filePath, String fileName, RecordReader recordReader) throws IOException {
+        long start = System.nanoTime();
+        UploadedFile uploadedFile = new UploadedFile(fileName, null);
+        uploadedFile.setRecordReader(recordReader.getName());
+        ImportPreview preview = new ImportPreview(productBatchWriter, previewSampleSize);
+
+        try (RecordSource source = openSource(filePath, uploadedFile)) {
+            ColumnMapping columns = ColumnMapping.fromHeaders(source.headers());
+            forEachBatch(source, columns, uploadedFile, 0,
+                    mapped -> preview.add(mapped.products(), mapped.skipped(), mapped.invalidPrices()));
+        }
+
+        UploadPreview result = preview.result(fileName, (System.nanoTime() - start) / 1_000_000);
+        log.info("Previewed {}: {} records, {} to insert, {} to update, {} unchanged, {} skipped in {} ms", fileName,
+                result.records(), result.inserted(), result.updated(), result.unchanged(), result.skipped(),
+                result.elapsedMillis());
+        return result;
+    }
+
+    /**
+     * Drops a deleted upload's rows from the key index, the lookup cache and
+     * the stats once the delete commits. The commit runs inside the caller's
+     * exclusive catalog lock, so no chunk can look a key up in between and
+     * find the deleted row still indexed.
+     */
+    private void forgetUpload(Long uploadedFileId) {
+        productKeyIndex.removeUpload(uploadedFileId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                productLookupService.invalidateUpload(uploadedFileId);
+                systemStatsService.invalidate();
+            }
+        });
+    }
+
+    private boolean isResume(UploadedFile uploadedFile) {
+        return uploadedFile.getCheckpointRecord() != null && uploadedFile.getCheckpointRecord() > 0;
+    }
+
+    /**
+     * A chunk of mapped rows handed from the transform stage to the writer.
+     * recordCount is the number of records consumed once the chunk is
+     * committed and nextPosition the source position of the record after it.
+     * invalidPrices are the records whose price was dropped.
+     */
+    private record MappedBatch(List<Product> products, int skipped, int recordCount, Long nextPosition,
+            List<InvalidPrice> invalidPrices) {
+        static final MappedBatch END = new MappedBatch(List.of(), 0, -1, null, List.of());
+    }
+
+    /**
+     * Runs the import as a three stage pipeline: a reader thread parses record
+     * batches, the transform pool maps them to products in parallel, and this
+     * thread writes them. Batches travel through a bounded FIFO of futures,
+     * so the writer always commits them in file order and a key repeated in
+     * the file ends up with its last row, whichever worker finished first.
+     */
+    private int processCsvRecords(String filePath, UploadedFile uploadedFile) throws IOException {
+        boolean resume = isResume(uploadedFile);
+        int committedRecords = resume ? uploadedFile.getCheckpointRecord() : 0;
+        initCounts(uploadedFile, resume);
+
+        try (RecordSource source = openSource(filePath, uploadedFile)) {
+
+            log.info("Importing {} (file {}) with {}, headers {}", uploadedFile.getFileName(), uploadedFile.getId(),
+                    source.getClass().getSimpleName(), source.headers());
+
+            ColumnMapping columns = ColumnMapping.fromHeaders(source.headers());
+            if (!columns.has(Column.UNIQUE_KEY)) {
+                log.warn("No UNIQUE_KEY column in file {}, every record will be skipped", uploadedFile.getId());
+            }
+            uploadedFile.setHeaderMapping(columns.describe());
+            uploadedFileRepository.save(uploadedFile);
+
+            long startTime = System.nanoTime();
+            int recordCount = forEachBatch(source, columns, uploadedFile, committedRecords, mapped -> {
+                if (stopping) {
+                    throw new IllegalStateException("Stopped by application shutdown");
+                }
+                commitChunk(mapped, uploadedFile);
+                publishProgress(uploadedFile, mapped.recordCount(), committedRecords, startTime);
+
+                // Log progress every 10000 records
+                int batchRecords = mapped.products().size() + mapped.skipped();
+                if (mapped.recordCount() / 10_000 > (mapped.recordCount() - batchRecords) / 10_000) {
+                    log.debug("File {}: {} records committed", uploadedFile.getId(), mapped.recordCount());
+                }
+            });
+
+            double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+            log.info("File {}: {} records, {} inserted, {} updated, {} unchanged, {} skipped, {} rows/sec",
+                    uploadedFile.getId(), recordCount, uploadedFile.getInsertedRows(), uploadedFile.getUpdatedRows(),
+                    uploadedFile.getUnchangedRows(), uploadedFile.getSkippedRows(),
+                    Math.round(seconds > 0 ? (recordCount - committedRecords) / seconds : 0));
+        }
+
+        return uploadedFile.getProcessedRows();
+    }
+
+    /**
+     * Runs the reader and transform stages over the source and hands each
+     * mapped batch to the consumer on this thread, in file order. Returns the
+     * record count after the last batch.
+     */
+    private int forEachBatch(RecordSource source, ColumnMapping columns, UploadedFile uploadedFile,
+            int committedRecords, Consumer<MappedBatch> consumer) throws IOException {
+        BlockingQueue<Future<MappedBatch>> pending =
+                new ArrayBlockingQueue<>(Math.max(2, transformExecutor.getMaxPoolSize() * 2));
+        Thread reader = new Thread(
+                () -> readBatches(source, columns, uploadedFile, committedRecords, pending),
+                "csv-reader-" + (uploadedFile.getId() != null ? uploadedFile.getId() : "preview"));
+        reader.start();
+
+        int recordCount = committedRecords;
+        try {
+            MappedBatch mapped;
+            while ((mapped = nextBatch(pending)) != MappedBatch.END) {
+                consumer.accept(mapped);
+                recordCount = mapped.recordCount();
+            }
+        } finally {
+            // Unblocks the reader if the writer stopped early
+            reader.interrupt();
+            joinQuietly(reader);
+        }
+        return recordCount;
+    }
+
+    private void publishProgress(UploadedFile uploadedFile, int recordsRead, int startRecord, long startTime) {
+        long elapsedNanos = System.nanoTime() - startTime;
+        long rowsPerSecond = elapsedNanos > 0 ? (recordsRead - startRecord) * 1_000_000_000L / elapsedNanos : 0;
+        uploadProgressService.publishProgress(uploadedFile, recordsRead, rowsPerSecond);
+    }
+
+    // A fresh import counts from zero, a resumed one carries on from the checkpoint
+    private void initCounts(UploadedFile uploadedFile, boolean resume) {
+        uploadedFile.setProcessedRows(resume ? orZero(uploadedFile.getProcessedRows()) : 0);
+        uploadedFile.setInsertedRows(resume ? orZero(uploadedFile.getInsertedRows()) : 0);
+        uploadedFile.setUpdatedRows(resume ? orZero(uploadedFile.getUpdatedRows()) : 0);
+        uploadedFile.setUnchangedRows(resume ? orZero(uploadedFile.getUnchangedRows()) : 0);
+        uploadedFile.setSkippedRows(resume ? orZero(uploadedFile.getSkippedRows()) : 0);
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Reader stage: cuts the file into batches of batch-size records, submits
+     * each to the transform pool and queues the future in file order. Ends the
+     * stream with END, or with a failed future if reading breaks.
+     */
+    private void readBatches(RecordSource source, ColumnMapping columns, UploadedFile uploadedFile,
+            int recordCount, BlockingQueue<Future<MappedBatch>> pending) {
+        try {
+            try {
+                // Parse time excludes the time spent waiting for room in the queue
+                long parseStart = System.nanoTime();
+                RecordSource.Batch batch;
+                while ((batch = source.nextBatch(batchSize)) != null) {
+                    metrics.recordParse(System.nanoTime() - parseStart);
+                    recordCount += batch.size();
+                    pending.put(submitTransform(batch, columns, uploadedFile, recordCount));
+                    parseStart = System.nanoTime();
+                }
+                pending.put(CompletableFuture.completedFuture(MappedBatch.END));
+            } catch (IOException e) {
+                pending.put(CompletableFuture.failedFuture(new UncheckedIOException(e)));
+            } catch (RuntimeException e) {
+                pending.put(CompletableFuture.failedFuture(e));
+            }
+        } catch (InterruptedException e) {
+            // The writer has stopped, nobody is waiting for more batches
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Future<MappedBatch> submitTransform(RecordSource.Batch batch, ColumnMapping columns,
+            UploadedFile uploadedFile, int recordCount) {
+        return transformExecutor.submit(() -> {
+            long start = System.nanoTime();
+            List<Product> products = new ArrayList<>(batch.size());
+            List<InvalidPrice> invalidPrices = new ArrayList<>();
+            int recordNumber = recordCount - batch.size();
+            for (SourceRecord record : batch) {
+                Product product = ProductMapper.map(record, columns, uploadedFile, ++recordNumber, invalidPrices);
+                if (product != null) {
+                    products.add(product);
+                }
+            }
+            metrics.recordTransform(System.nanoTime() - start);
+            return new MappedBatch(products, batch.size() - products.size(), recordCount, batch.nextPosition(),
+                    invalidPrices);
+        });
+    }
+
+    private MappedBatch nextBatch(BlockingQueue<Future<MappedBatch>> pending) throws IOException {
+        try {
+            return pending.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes one chunk and advances the checkpoint and row counts in the same
+     * transaction, so a failure never loses committed rows and never skips
+     * uncommitted ones. If the transaction fails the in-memory counts run
+     * ahead of the database, which is why the failure path reloads the upload.
+     */
+    private void commitChunk(MappedBatch mapped, UploadedFile uploadedFile) {
+        long start = System.nanoTime();
+        ProductBatchWriter.BatchResult written;
+        try {
+            written = catalogLock.withChunk(() -> writeChunkWithRetries(mapped, uploadedFile));
+        } catch (RuntimeException e) {
+            metrics.recordFailed(mapped.products().size());
+            throw e;
+        }
+        metrics.recordWrite(System.nanoTime() - start);
+        metrics.recordChunk(written.inserted(), written.updated(), written.unchanged(), mapped.skipped());
+        systemStatsService.recordChunk(uploadedFile, written);
+        productLookupService.invalidate(written.writtenKeys());
+    }
+
+    /**
+     * Chunks of parallel imports are written concurrently. When two insert
+     * the same new key, the unique constraint on unique_key fails the one
+     * that commits second; row lock timeouts and deadlocks between chunks
+     * updating the same rows fail one of them too. The failed chunk is rolled
+     * back and written again, resolving its keys from the table this time.
+     */
+    private ProductBatchWriter.BatchResult writeChunkWithRetries(MappedBatch mapped, UploadedFile uploadedFile) {
+        for (int attempt = 1; ; attempt++) {
+            boolean fromDatabase = attempt > 1;
+            try {
+                return transactionTemplate.execute(status -> writeChunk(mapped, uploadedFile, fromDatabase));
+            } catch (ChunkConflictException e) {
+                if (attempt == MAX_CHUNK_ATTEMPTS) {
+                    throw (RuntimeException) e.getCause();
+                }
+                log.debug("File {}: chunk ending at record {} collided with another import, writing it again",
+                        uploadedFile.getId(), mapped.recordCount(), e.getCause());
+            }
+        }
+    }
+
+    // Thrown only before the chunk changed any count, so the retry starts from the same state
+    private static final class ChunkConflictException extends RuntimeException {
+        ChunkConflictException(RuntimeException cause) {
+            super(cause);
+        }
+    }
+
+    private ProductBatchWriter.BatchResult writeChunk(MappedBatch mapped, UploadedFile uploadedFile,
+            boolean fromDatabase) {
+        ProductBatchWriter.BatchResult written;
+        try {
+            written = productBatchWriter.upsert(mapped.products(), uploadedFile.getId(), fromDatabase);
+        } catch (DuplicateKeyException | ConcurrencyFailureException e) {
+            throw new ChunkConflictException(e);
+        }
+        uploadedFile.setCheckpointRecord(mapped.recordCount());
+        uploadedFile.setCheckpointPosition(mapped.nextPosition());
+        uploadedFile.setProcessedRows(uploadedFile.getProcessedRows() + mapped.products().size());
+        uploadedFile.setInsertedRows(uploadedFile.getInsertedRows() + written.inserted());
+        uploadedFile.setUpdatedRows(uploadedFile.getUpdatedRows() + written.updated());
+        uploadedFile.setUnchangedRows(uploadedFile.getUnchangedRows() + written.unchanged());
+        uploadedFile.setSkippedRows(uploadedFile.getSkippedRows() + mapped.skipped());
+        uploadedFileRepository.updateCheckpoint(uploadedFile);
+        return written;
+    }
+
+    /**
+     * Opens the file with the upload's reader, positioned after the committed
+     * records of a resumed import. Files the mapped reader cannot take fall
+     * back to commons-csv every time, so a resume reads positions the way
+     * they were written.
+     */
+    private RecordSource openSource(String filePath, UploadedFile uploadedFile) throws IOException {
+        boolean resume = isResume(uploadedFile);
+        int committedRecords = resume ? uploadedFile.getCheckpointRecord() : 0;
+        Long position = resume ? uploadedFile.getCheckpointPosition() : null;
+
+        // A streamed chunked upload is read as it arrives; only commons-csv reads streams.
+        // A preview has no upload record, so it is never one.
+        Optional<StreamOpener> receiving = uploadedFile.getId() != null
+                ? chunkedUploadService.receivingContent(uploadedFile.getId()) : Optional.empty();
+        if (receiving.isPresent()) {
+            StreamOpener content = () -> Compression.decompress(receiving.get().open());
+            FileProfile profile = profileOf(content, uploadedFile);
+            return CommonsCsvRecordSource.open(content, profile, committedRecords, position);
+        }
+
+        // Compressed files are parsed from the decompressing stream, never expanded on disk
+        Path file = Path.of(filePath);
+        Compression compression = Compression.detect(file);
+        if (compression != Compression.NONE) {
+            StreamOpener content = () -> Compression.decompress(Files.newInputStream(file));
+            FileProfile profile = profileOf(content, uploadedFile);
+            log.info("File {} is {} compressed, reading it with commons-csv", uploadedFile.getId(), compression);
+            return CommonsCsvRecordSource.open(content, profile, committedRecords, position);
+        }
+
+        FileProfile profile = profileOf(() -> Files.newInputStream(file), uploadedFile);
+        if (RecordReader.fromName(uploadedFile.getRecordReader()) == RecordReader.MAPPED) {
+            RecordSource source = MappedRecordSource.open(file, profile, committedRecords, position);
+            if (source != null) {
+                return source;
+            }
+            log.info("File {} cannot be memory-mapped, reading it with commons-csv", uploadedFile.getId());
+        }
+        return CommonsCsvRecordSource.open(file, profile, committedRecords, position);
+    }
+
+    // Sniffed once per file; a resume reads the file the way the first attempt did
+    private FileProfile profileOf(StreamOpener content, UploadedFile uploadedFile) throws IOException {
+        if (uploadedFile.getDelimiter() != null && uploadedFile.getCharset() != null) {
+            return new FileProfile(uploadedFile.getDelimiter().charAt(0), Charset.forName(uploadedFile.getCharset()));
+        }
+        FileProfile profile = FileSniffer.sniff(content);
+        uploadedFile.setDelimiter(String.valueOf(profile.delimiter()));
+        uploadedFile.setCharset(profile.charset().name());
+        return profile;
+    }
+}
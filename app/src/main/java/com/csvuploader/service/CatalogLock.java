@@ -0,0 +1,38 @@
+package com.csvuploader.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps whole-upload deletes apart from chunk writes. Chunks of parallel
+ * imports share the lock and commit side by side, relying on row locks and
+ * the unique constraint on unique_key for the keys they have in common. A
+ * retried upload deletes its rows exclusively: its keys are not known up
+ * front, and a chunk resolving keys meanwhile could find the deleted rows
+ * still indexed, or count a row as unchanged just before it is deleted.
+ */
+@Component
+public class CatalogLock {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public <T> T withChunk(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public <T> T withAll(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads sent as numbered chunks, for files beyond the multipart limit and
+ * links that drop. Each chunk is checked against its MD5 and written at its
+ * offset in a partial file, so chunks may arrive in any order, in parallel,
+ * and again after a failure. The MD5 of the whole file is carried along the
+ * prefix of chunks received so far and checked against the checksum the
+ * client declared up front; a file only appears at its stored path once it
+ * matches. Being declared before any byte arrives, the checksum of a
+ * compressed file is that of its compressed bytes.
+ * <p>
+ * A streamed upload is imported while it is still arriving: the import
+ * reads the received prefix and waits for the rest. Sessions live in
+ * memory; an upload interrupted by a restart has to be sent again.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${csv.chunked.chunk-size:8MB}")
+    private DataSize defaultChunkSize;
+
+    // Applies to every chunk but the last, so tiny chunks cannot blow up a session's bookkeeping
+    @Value("${csv.chunked.min-chunk-size:1MB}")
+    private DataSize minChunkSize;
+
+    @Value("${csv.chunked.max-chunk-size:64MB}")
+    private DataSize maxChunkSize;
+
+    @Value("${csv.chunked.max-chunks:100000}")
+    private int maxChunks;
+
+    @Value("${csv.chunked.max-file-size:20GB}")
+    private DataSize maxFileSize;
+
+    // Sessions without a chunk for this long expire; a streamed import gives up waiting
+    @Value("${csv.chunked.idle-timeout-minutes:30}")
+    private long idleTimeoutMinutes;
+
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Where a chunked upload stands. missingChunks lists the chunks still
+     * to send, so a client that lost its connection knows where to go on.
+     */
+    public record ChunkedUploadState(Long uploadId, long size, long chunkSize, int chunkCount,
+                                     long receivedBytes, List<Integer> missingChunks, boolean stream) {}
+
+    /**
+     * Opens a session for a file of the given size and MD5. A file that was
+     * uploaded before is refused, unless that upload failed and its stored
+     * file is gone, in which case the upload is sent again under its old id.
+     *
+     * @throws IllegalArgumentException if the sizes or the checksum are invalid
+     * @throws IllegalStateException if the file has already been uploaded
+     */
+    public ChunkedUploadState start(String fileName, long size, String checksum, Long chunkSize,
+            RecordReader recordReader, boolean stream) throws IOException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("fileName is required");
+        }
+        if (size <= 0 || size > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("size must be between 1 and " + maxFileSize.toBytes() + " bytes");
+        }
+        if (checksum == null || !checksum.matches("[0-9a-fA-F]{32}")) {
+            throw new IllegalArgumentException("checksum must be the MD5 of the file as 32 hex digits");
+        }
+        long chunkBytes = chunkSize != null ? chunkSize : defaultChunkSize.toBytes();
+        // A file sent as a single chunk may be smaller than the minimum
+        long minChunkBytes = Math.min(minChunkSize.toBytes(), size);
+        if (chunkBytes < minChunkBytes || chunkBytes > maxChunkSize.toBytes()) {
+            throw new IllegalArgumentException("chunkSize must be between " + minChunkBytes + " and "
+                    + maxChunkSize.toBytes() + " bytes");
+        }
+        long chunkCount = (size + chunkBytes - 1) / chunkBytes;
+        if (chunkCount > maxChunks) {
+            throw new IllegalArgumentException("chunkSize is too small for a file of " + size + " bytes, at most "
+                    + maxChunks + " chunks are allowed");
+        }
+
+        String md5 = checksum.toLowerCase();
+        UploadedFile uploadedFile = uploadedFileRepository.findByChecksum(md5)
+                .map(this::reusableUpload)
+                .orElseGet(() -> new UploadedFile(fileName, md5));
+        Path storedPath = fileStorageService.newStoragePath(fileName);
+        uploadedFile.setStoredFilePath(storedPath.toString());
+        // A streamed upload is read as it grows, which only commons-csv can do;
+        // keeping that reader makes a resume read positions the way they were written
+        uploadedFile.setRecordReader(stream ? RecordReader.COMMONS_CSV.getName() : recordReader.getName());
+        uploadedFile.setStatus(stream ? "queued" : "receiving");
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+
+        Path partialPath = fileStorageService.partialPath(uploadedFile.getStoredFilePath());
+        Files.createFile(partialPath);
+        Session session = new Session(uploadedFile.getId(), partialPath, storedPath, size, chunkBytes,
+                (int) chunkCount, md5, stream);
+        sessions.put(session.uploadId, session);
+        log.info("Receiving {} (file {}) in {} chunks of {} bytes{}", fileName, session.uploadId, chunkCount,
+                chunkBytes, stream ? ", importing as it arrives" : "");
+        return session.state();
+    }
+
+    // An earlier upload of the same file can only be taken over once it failed for good
+    private UploadedFile reusableUpload(UploadedFile existing) {
+        String storedFilePath = existing.getStoredFilePath();
+        if (sessions.containsKey(existing.getId())) {
+            throw new IllegalStateException("This file is already being uploaded as upload " + existing.getId());
+        }
+        if (!"failed".equals(existing.getStatus())
+                || (storedFilePath != null && Files.exists(Paths.get(storedFilePath)))) {
+            throw new IllegalStateException("This file has already been uploaded");
+        }
+        // Claimed before anything else changes, so of two concurrent starts only one takes it over
+        if (uploadedFileRepository.claimStatus(existing.getId(), "failed", "receiving") == 0) {
+            throw new IllegalStateException("This file is already being uploaded as upload " + existing.getId());
+        }
+        existing.setErrorMessage(null);
+        existing.setCheckpointRecord(0);
+        existing.setCheckpointPosition(null);
+        existing.setDelimiter(null);
+        existing.setCharset(null);
+        existing.setHeaderMapping(null);
+        return existing;
+    }
+
+    public Optional<ChunkedUploadState> state(Long uploadId) {
+        return Optional.ofNullable(sessions.get(uploadId)).map(Session::state);
+    }
+
+    /**
+     * Writes chunk index from body. A chunk that was already received with
+     * the same checksum is acknowledged without being written again.
+     *
+     * @throws NoSuchElementException if the upload has no open session
+     * @throws IllegalArgumentException if the chunk has the wrong size or checksum
+     * @throws IllegalStateException if the chunk is being received or was received with other content
+     */
+    public ChunkedUploadState receiveChunk(Long uploadId, int index, String checksum, InputStream body)
+            throws IOException {
+        Session session = session(uploadId);
+        if (index < 0 || index >= session.chunkCount) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (session.chunkCount - 1));
+        }
+        if (checksum == null || checksum.isBlank()) {
+            throw new IllegalArgumentException("checksum is required");
+        }
+        String md5 = checksum.toLowerCase();
+        if (session.alreadyReceived(index, md5)) {
+            return session.state();
+        }
+
+        MessageDigest running = session.begin(index);
+        boolean received = false;
+        try {
+            long offset = index * session.chunkSize;
+            long expected = Math.min(session.chunkSize, session.size - offset);
+            MessageDigest chunkDigest = FileStorageService.md5();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long written = 0;
+            long lines = 0;
+            int last = -1;
+            try (FileChannel channel = FileChannel.open(session.partialPath, StandardOpenOption.WRITE)) {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    if (written + read > expected) {
+                        throw new IllegalArgumentException("Chunk " + index + " is larger than " + expected + " bytes");
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes, offset + written + bytes.position());
+                    }
+                    chunkDigest.update(buffer, 0, read);
+                    if (running != null) {
+                        running.update(buffer, 0, read);
+                    }
+                    lines += countLines(buffer, read);
+                    if (read > 0) {
+                        last = buffer[read - 1];
+                    }
+                    written += read;
+                }
+            }
+            if (written != expected) {
+                throw new IllegalArgumentException("Chunk " + index + " has " + written + " bytes, expected " + expected);
+            }
+            String actual = HexFormat.of().formatHex(chunkDigest.digest());
+            if (!actual.equals(md5)) {
+                throw new IllegalArgumentException("Checksum mismatch for chunk " + index + ": received " + actual);
+            }
+            session.received(index, md5, running, lines, last);
+            received = true;
+        } finally {
+            if (!received) {
+                session.abandon(index);
+            }
+        }
+        return session.state();
+    }
+
+    /**
+     * Checks the whole file against the declared checksum and moves it to
+     * its stored path. A file that does not match is discarded and its
+     * upload failed.
+     *
+     * @throws NoSuchElementException if the upload has no open session
+     * @throws IllegalStateException if chunks are missing
+     * @throws IllegalArgumentException if the file does not match its checksum
+     */
+    public ChunkedUploadState complete(Long uploadId) throws IOException {
+        Session session = session(uploadId);
+        String actual = session.finalChecksum();
+        if (!actual.equals(session.checksum)) {
+            discard(session, "Checksum mismatch: received file has MD5 " + actual + ", expected " + session.checksum);
+            throw new IllegalArgumentException("Checksum mismatch: received file has MD5 " + actual);
+        }
+
+        session.finish();
+        sessions.remove(uploadId);
+        if (!session.stream) {
+            // Lines of a compressed file are only known after decompressing it
+            int estimatedRows = Compression.detect(session.storedPath) == Compression.NONE
+                    ? session.estimatedRows()
+                    : fileStorageService.scan(session.storedPath).estimatedRows();
+            // Nothing imports this upload yet, so the row is ours to update
+            uploadedFileRepository.findById(uploadId).ifPresent(uploadedFile -> {
+                uploadedFile.setEstimatedRows(estimatedRows);
+                uploadedFileRepository.save(uploadedFile);
+            });
+        }
+        log.info("Received all {} bytes of file {}", session.size, uploadId);
+        return session.state();
+    }
+
+    /**
+     * Drops the session and its partial file, e.g. when its import could
+     * not be queued; the upload itself is left to the caller.
+     */
+    public void cancel(Long uploadId) {
+        Session session = sessions.remove(uploadId);
+        if (session != null) {
+            session.fail("Upload cancelled");
+            fileStorageService.deleteFile(session.partialPath.toString());
+        }
+    }
+
+    /**
+     * The content of an upload that is still arriving, or empty once it is
+     * complete or was never chunked. Streams opened from it block until the
+     * bytes they need are received and end when the upload is complete.
+     */
+    public Optional<StreamOpener> receivingContent(Long uploadId) {
+        Session session = sessions.get(uploadId);
+        return session != null ? Optional.of(session::open) : Optional.empty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterruptedChunkedUploads() {
+        for (UploadedFile uploadedFile : uploadedFileRepository.findByStatusOrderByCreatedAtDesc("receiving")) {
+            uploadedFile.setStatus("failed");
+            uploadedFile.setErrorMessage("Upload interrupted by application restart, please upload it again");
+            uploadedFileRepository.save(uploadedFile);
+        }
+        fileStorageService.deletePartialFiles();
+    }
+
+    private Session session(Long uploadId) {
+        Session session = sessions.get(uploadId);
+        if (session == null) {
+            throw new NoSuchElementException("No chunked upload in progress for upload " + uploadId);
+        }
+        return session;
+    }
+
+    /**
+     * Discards sessions that have not received a chunk for the idle timeout,
+     * with their partial files, whether or not new uploads arrive.
+     */
+    @Scheduled(fixedDelayString = "${csv.chunked.expiry-interval-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void expireIdleSessions() {
+        expireSessionsIdleFor(Duration.ofMinutes(idleTimeoutMinutes));
+    }
+
+    void expireSessionsIdleFor(Duration timeout) {
+        for (Session session : sessions.values()) {
+            if (session.idleNanos() > timeout.toNanos()) {
+                log.info("Chunked upload of file {} expired after {} idle minutes", session.uploadId, timeout.toMinutes());
+                discard(session, "No chunk received for " + timeout.toMinutes() + " minutes, please upload it again");
+            }
+        }
+    }
+
+    private void discard(Session session, String reason) {
+        sessions.remove(session.uploadId);
+        session.fail(reason);
+        fileStorageService.deleteFile(session.partialPath.toString());
+        // A streamed import fails on its own when its stream does
+        if (!session.stream) {
+            uploadedFileRepository.findById(session.uploadId).ifPresent(uploadedFile -> {
+                uploadedFile.setStatus("failed");
+                uploadedFile.setErrorMessage(reason);
+                uploadedFileRepository.save(uploadedFile);
+            });
+        }
+    }
+
+    private static int countLines(byte[] bytes, int length) {
+        int lines = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * One upload being received. Everything but the chunk bytes themselves
+     * is guarded by the session's monitor, which streams also wait on.
+     */
+    private final class Session {
+        final Long uploadId;
+        final Path partialPath;
+        final Path storedPath;
+        final long size;
+        final long chunkSize;
+        final int chunkCount;
+        final String checksum;
+        final boolean stream;
+
+        private final BitSet received = new BitSet();
+        private final BitSet inFlight = new BitSet();
+        private final String[] chunkChecksums;
+
+        // MD5, line count and last byte of the first contiguousChunks chunks
+        private MessageDigest digest = FileStorageService.md5();
+        private int contiguousChunks;
+        private long lines;
+        private int last = -1;
+
+        private long lastActivity = System.nanoTime();
+        private boolean complete;
+        private String failure;
+
+        Session(Long uploadId, Path partialPath, Path storedPath, long size, long chunkSize, int chunkCount,
+                String checksum, boolean stream) {
+            this.uploadId = uploadId;
+            this.partialPath = partialPath;
+            this.storedPath = storedPath;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = chunkCount;
+            this.checksum = checksum;
+            this.stream = stream;
+            this.chunkChecksums = new String[chunkCount];
+        }
+
+        synchronized ChunkedUploadState state() {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            long receivedBytes = (long) received.cardinality() * chunkSize;
+            if (received.get(chunkCount - 1)) {
+                receivedBytes -= (long) chunkCount * chunkSize - size;
+            }
+            return new ChunkedUploadState(uploadId, size, chunkSize, chunkCount, receivedBytes, missing, stream);
+        }
+
+        synchronized boolean alreadyReceived(int index, String md5) {
+            if (!received.get(index)) {
+                return false;
+            }
+            if (!chunkChecksums[index].equals(md5)) {
+                throw new IllegalStateException("Chunk " + index + " was already received with checksum "
+                        + chunkChecksums[index]);
+            }
+            return true;
+        }
+
+        /**
+         * Claims chunk index for one request. Returns the running MD5 carried
+         * on to include this chunk when it is the next one in file order, so
+         * chunks sent in order are never read back.
+         */
+        synchronized MessageDigest begin(int index) {
+            checkOpen();
+            if (received.get(index) || inFlight.get(index)) {
+                throw new IllegalStateException("Chunk " + index + " is already being received");
+            }
+            inFlight.set(index);
+            lastActivity = System.nanoTime();
+            return index == contiguousChunks ? copy(digest) : null;
+        }
+
+        synchronized void received(int index, String md5, MessageDigest running, long chunkLines, int chunkLast)
+                throws IOException {
+            inFlight.clear(index);
+            received.set(index);
+            chunkChecksums[index] = md5;
+            lastActivity = System.nanoTime();
+            if (running != null && index == contiguousChunks) {
+                digest = running;
+                lines += chunkLines;
+                last = chunkLast;
+                contiguousChunks++;
+            }
+            // Chunks that arrived early join the checksum once the gap before them closes
+            while (contiguousChunks < chunkCount && received.get(contiguousChunks)) {
+                readBack(contiguousChunks++);
+            }
+            notifyAll();
+        }
+
+        synchronized void abandon(int index) {
+            inFlight.clear(index);
+        }
+
+        private void readBack(int index) throws IOException {
+            long offset = index * chunkSize;
+            long remaining = Math.min(chunkSize, size - offset);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            try (FileChannel channel = FileChannel.open(partialPath, StandardOpenOption.READ)) {
+                while (remaining > 0) {
+                    buffer.clear().limit((int) Math.min(BUFFER_SIZE, remaining));
+                    int read = channel.read(buffer, offset);
+                    if (read <= 0) {
+                        throw new IOException("Chunk " + index + " of file " + uploadId + " is truncated");
+                    }
+                    digest.update(buffer.array(), 0, read);
+                    lines += countLines(buffer.array(), read);
+                    last = buffer.array()[read - 1];
+                    offset += read;
+                    remaining -= read;
+                }
+            }
+        }
+
+        synchronized String finalChecksum() {
+            checkOpen();
+            if (contiguousChunks < chunkCount || !inFlight.isEmpty()) {
+                throw new IllegalStateException((chunkCount - received.cardinality()) + " of " + chunkCount
+                        + " chunks are still missing");
+            }
+            return HexFormat.of().formatHex(copy(digest).digest());
+        }
+
+        // Lines minus the header, counting a last line without a line feed
+        synchronized int estimatedRows() {
+            long rows = lines + (last != '\n' ? 1 : 0) - 1;
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, rows));
+        }
+
+        // Streams opened from now on read the stored file
+        synchronized void finish() throws IOException {
+            Files.move(partialPath, storedPath, StandardCopyOption.ATOMIC_MOVE);
+            complete = true;
+            notifyAll();
+        }
+
+        synchronized void fail(String reason) {
+            failure = reason;
+            notifyAll();
+        }
+
+        synchronized long idleNanos() {
+            return System.nanoTime() - lastActivity;
+        }
+
+        private void checkOpen() {
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+            if (complete) {
+                throw new IllegalStateException("Upload " + uploadId + " is already complete");
+            }
+        }
+
+        synchronized InputStream open() throws IOException {
+            if (complete) {
+                return Files.newInputStream(storedPath);
+            }
+            return new ReceivedContentStream(this, FileChannel.open(partialPath, StandardOpenOption.READ));
+        }
+
+        /**
+         * Bytes readable at position: positive while received content is
+         * ahead of it, -1 at the end of a complete upload. Waits for chunks
+         * otherwise, until the session has been idle for the idle timeout.
+         */
+        synchronized long awaitReadable(long position) throws IOException {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException(failure);
+                }
+                long readable = Math.min(size, contiguousChunks * chunkSize) - position;
+                if (readable > 0) {
+                    return readable;
+                }
+                if (complete) {
+                    return -1;
+                }
+                long waitNanos = lastActivity + TimeUnit.MINUTES.toNanos(idleTimeoutMinutes) - System.nanoTime();
+                if (waitNanos <= 0) {
+                    throw new IOException("No chunk received for " + idleTimeoutMinutes + " minutes");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for chunks of file " + uploadId);
+                }
+            }
+        }
+    }
+
+    private static MessageDigest copy(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("MD5 digest cannot be copied", e);
+        }
+    }
+
+    /**
+     * Reads the partial file no further than the contiguous chunks received.
+     */
+    private static final class ReceivedContentStream extends InputStream {
+        private final Session session;
+        private final FileChannel channel;
+        private long position;
+
+        ReceivedContentStream(Session session, FileChannel channel) {
+            this.session = session;
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long readable = session.awaitReadable(position);
+            if (readable < 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, readable)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.csvuploader.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resolves the columns we import to header positions once per file, so rows
+ * are read by index instead of by name. Header aliases such as a leading BOM
+ * or the "?" some exports leave in its place, spaces or hyphens for
+ * underscores, and the alternative names listed per column are normalised
+ * here rather than retried on every row.
+ */
+public final class ColumnMapping {
+
+    public enum Column {
+        UNIQUE_KEY("UNIQUE_KEY"),
+        PRODUCT_TITLE("PRODUCT_TITLE"),
+        PRODUCT_DESCRIPTION("PRODUCT_DESCRIPTION"),
+        STYLE_NUMBER("STYLE#", "STYLE_NUMBER", "STYLE_NO", "STYLE"),
+        SANMAR_MAINFRAME_COLOR("SANMAR_MAINFRAME_COLOR", "MAINFRAME_COLOR"),
+        SIZE("SIZE"),
+        COLOR_NAME("COLOR_NAME", "COLOR"),
+        PIECE_PRICE("PIECE_PRICE", "PRICE");
+
+        private final String header;
+
+        // Matched only when no header carries the canonical name
+        private final List<String> aliases;
+
+        Column(String header, String... aliases) {
+            this.header = header;
+            this.aliases = List.of(aliases);
+        }
+
+        public String getHeader() {
+            return header;
+        }
+    }
+
+    private final int[] indexes;
+
+    private ColumnMapping(int[] indexes) {
+        this.indexes = indexes;
+    }
+
+    public static ColumnMapping fromHeaders(List<String> headers) {
+        List<String> normalized = new ArrayList<>(headers.size());
+        for (String header : headers) {
+            normalized.add(normalizeHeader(header));
+        }
+
+        int[] indexes = new int[Column.values().length];
+        Arrays.fill(indexes, -1);
+        for (Column column : Column.values()) {
+            int index = normalized.indexOf(column.header);
+            for (int i = 0; index < 0 && i < column.aliases.size(); i++) {
+                index = normalized.indexOf(column.aliases.get(i));
+            }
+            indexes[column.ordinal()] = index;
+        }
+        return new ColumnMapping(indexes);
+    }
+
+    static String normalizeHeader(String header) {
+        int start = 0;
+        while (start < header.length() && (header.charAt(start) == '\uFEFF' || header.charAt(start) == '?')) {
+            start++;
+        }
+        return header.substring(start).trim().toUpperCase(Locale.ROOT).replaceAll("[\\s-]+", "_");
+    }
+
+    public boolean has(Column column) {
+        return indexes[column.ordinal()] >= 0;
+    }
+
+    /**
+     * The resolved mapping as stored on the upload, e.g.
+     * "UNIQUE_KEY=0,PRODUCT_TITLE=1,STYLE#=-1"; -1 marks a missing column.
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        for (Column column : Column.values()) {
+            if (description.length() > 0) {
+                description.append(',');
+            }
+            description.append(column.header).append('=').append(indexes[column.ordinal()]);
+        }
+        return description.toString();
+    }
+
+    public List<Column> missingColumns() {
+        List<Column> missing = new ArrayList<>();
+        for (Column column : Column.values()) {
+            if (!has(column)) {
+                missing.add(column);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Cleaned value of the column, or null when the file has no such column
+     * or the row is too short to contain it.
+     */
+    public String get(SourceRecord record, Column column) {
+        int index = indexes[column.ordinal()];
+        if (index < 0) {
+            return null;
+        }
+        return ValueSanitizer.clean(record.get(index));
+    }
+}
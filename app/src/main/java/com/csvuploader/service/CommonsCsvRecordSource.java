@@ -0,0 +1,162 @@
+package com.csvuploader.service;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * RecordSource over commons-csv. Records are fully parsed on the reader
+ * thread; positions are character offsets into the decoded file.
+ */
+public final class CommonsCsvRecordSource implements RecordSource {
+
+    private final CSVParser parser;
+
+    private final Iterator<CSVRecord> records;
+
+    // Read ahead to learn where the current batch ends
+    private CSVRecord next;
+
+    private CommonsCsvRecordSource(CSVParser parser) {
+        this.parser = parser;
+        this.records = parser.iterator();
+    }
+
+    /**
+     * The format of a single record, without header handling; values are
+     * trimmed.
+     */
+    static CSVFormat recordFormat(char delimiter) {
+        return CSVFormat.DEFAULT.builder()
+                .setDelimiter(delimiter)
+                .setTrim(true)
+                .build();
+    }
+
+    public static CommonsCsvRecordSource open(Path file, FileProfile profile, int committedRecords, Long position)
+            throws IOException {
+        return open(() -> Files.newInputStream(file), profile, committedRecords, position);
+    }
+
+    /**
+     * Opens the content past its header. A resumed import starts at position
+     * when there is one, else it skips committedRecords from the top.
+     */
+    public static CommonsCsvRecordSource open(StreamOpener content, FileProfile profile, int committedRecords,
+            Long position) throws IOException {
+        CSVFormat format = recordFormat(profile.delimiter()).builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreHeaderCase(true)
+                .build();
+
+        if (committedRecords == 0 || position == null) {
+            CommonsCsvRecordSource source = new CommonsCsvRecordSource(
+                    new CSVParser(reader(content, profile), format));
+            for (int i = 0; i < committedRecords && source.records.hasNext(); i++) {
+                source.records.next();
+            }
+            return source;
+        }
+
+        // Resume: take the header from the top of the file, then seek straight
+        // to the first uncommitted record
+        String[] headers;
+        try (CSVParser headerParser = new CSVParser(reader(content, profile), format)) {
+            headers = headerParser.getHeaderNames().toArray(new String[0]);
+        }
+
+        Reader reader = reader(content, profile);
+        try {
+            long remaining = position;
+            while (remaining > 0) {
+                long skipped = reader.skip(remaining);
+                if (skipped <= 0) {
+                    throw new IOException("Checkpoint position " + position + " is beyond the end of the file");
+                }
+                remaining -= skipped;
+            }
+            CSVFormat resumeFormat = format.builder()
+                    .setHeader(headers)
+                    .setSkipHeaderRecord(false)
+                    .build();
+            return new CommonsCsvRecordSource(new CSVParser(reader, resumeFormat, position, committedRecords + 1L));
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    private static Reader reader(StreamOpener content, FileProfile profile) throws IOException {
+        return new InputStreamReader(content.open(), profile.charset());
+    }
+
+    static SourceRecord wrap(CSVRecord record) {
+        return index -> index < record.size() ? record.get(index) : null;
+    }
+
+    @Override
+    public List<String> headers() {
+        return parser.getHeaderNames();
+    }
+
+    @Override
+    public Batch nextBatch(int maxRecords) {
+        List<CSVRecord> batch = new ArrayList<>(maxRecords);
+        if (next != null) {
+            batch.add(next);
+            next = null;
+        }
+        while (batch.size() < maxRecords && records.hasNext()) {
+            batch.add(records.next());
+        }
+        if (batch.isEmpty()) {
+            return null;
+        }
+
+        Long nextPosition = null;
+        if (records.hasNext()) {
+            next = records.next();
+            nextPosition = next.getCharacterPosition();
+        }
+        return new RecordBatch(batch, nextPosition);
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private record RecordBatch(List<CSVRecord> records, Long nextPosition) implements Batch {
+
+        @Override
+        public int size() {
+            return records.size();
+        }
+
+        @Override
+        public Iterator<SourceRecord> iterator() {
+            Iterator<CSVRecord> iterator = records.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SourceRecord next() {
+                    return wrap(iterator.next());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.csvuploader.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * How a stored upload is compressed, told by its leading magic bytes rather
+ * than its name. Uploads are kept compressed on disk and decompressed as
+ * they are read, so the expanded file is never written.
+ */
+public enum Compression {
+    NONE,
+    GZIP,
+    ZIP,
+    ZSTD;
+
+    private static final int MAGIC_BYTES = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static Compression detect(byte[] head, int length) {
+        if (length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B) {
+            return GZIP;
+        }
+        if (length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4) {
+            return ZIP;
+        }
+        if (length >= 4 && (head[0] & 0xFF) == 0x28 && (head[1] & 0xFF) == 0xB5
+                && (head[2] & 0xFF) == 0x2F && (head[3] & 0xFF) == 0xFD) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    public static Compression detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(MAGIC_BYTES);
+            return detect(head, head.length);
+        }
+    }
+
+    /**
+     * The logical content of in: decompressed if it starts with the magic
+     * bytes of a supported format, as is otherwise. A zip archive yields its
+     * first file.
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(MAGIC_BYTES);
+        byte[] head = buffered.readNBytes(MAGIC_BYTES);
+        buffered.reset();
+
+        try {
+            return switch (detect(head, head.length)) {
+                case NONE -> buffered;
+                case GZIP -> new GZIPInputStream(buffered, BUFFER_SIZE);
+                case ZSTD -> new BufferedInputStream(new ZstdInputStream(buffered), BUFFER_SIZE);
+                case ZIP -> firstFile(new ZipInputStream(buffered));
+            };
+        } catch (IOException | RuntimeException e) {
+            buffered.close();
+            throw e;
+        }
+    }
+
+    // Skips folders and the resource forks macOS adds to archives it creates
+    private static InputStream firstFile(ZipInputStream zip) throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory() && !entry.getName().startsWith("__MACOSX/")) {
+                return zip;
+            }
+        }
+        throw new IOException("The zip archive contains no file");
+    }
+}
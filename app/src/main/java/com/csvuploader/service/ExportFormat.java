@@ -0,0 +1,39 @@
+package com.csvuploader.service;
+
+import java.util.Locale;
+
+/**
+ * Formats the catalog export is written in, by the name the export endpoint
+ * accepts.
+ */
+public enum ExportFormat {
+    // The import's own headers, so an export can be uploaded again
+    CSV("csv", "text/csv"),
+    // One JSON object per line, fields named as in the product API
+    NDJSON("ndjson", "application/x-ndjson");
+
+    private final String name;
+    private final String contentType;
+
+    ExportFormat(String name, String contentType) {
+        this.name = name;
+        this.contentType = contentType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static ExportFormat fromName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name.equals(name.toLowerCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format: " + name);
+    }
+}
@@ -0,0 +1,11 @@
+package com.csvuploader.service;
+
+import java.nio.charset.Charset;
+
+/**
+ * How a stored upload is encoded: detected once by FileSniffer and kept on
+ * the upload, so a resumed import reads the file exactly as the first run
+ * did.
+ */
+public record FileProfile(char delimiter, Charset charset) {
+}
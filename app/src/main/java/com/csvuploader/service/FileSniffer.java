@@ -0,0 +1,159 @@
+package com.csvuploader.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Detects the charset and delimiter of an upload from its first
+ * SAMPLE_BYTES. The charset comes from a byte order mark, the zero bytes of
+ * unmarked UTF-16, or a strict UTF-8 decode of the sample, with
+ * windows-1252 for anything else. The delimiter is the candidate that
+ * splits the header and the sampled lines into the same number of fields.
+ */
+public final class FileSniffer {
+
+    static final int SAMPLE_BYTES = 16 * 1024;
+
+    private static final int SAMPLE_LINES = 20;
+
+    // In order of preference when several split the lines equally well
+    private static final char[] DELIMITERS = {',', '\t', ';', '|'};
+
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    private FileSniffer() {
+    }
+
+    public static FileProfile sniff(StreamOpener content) throws IOException {
+        byte[] sample;
+        boolean complete;
+        try (InputStream in = content.open()) {
+            sample = in.readNBytes(SAMPLE_BYTES);
+            complete = in.read() < 0;
+        }
+        Charset charset = detectCharset(sample);
+        return new FileProfile(detectDelimiter(sample, charset, complete), charset);
+    }
+
+    static Charset detectCharset(byte[] sample) {
+        int length = sample.length;
+        if (length >= 3 && (sample[0] & 0xFF) == 0xEF && (sample[1] & 0xFF) == 0xBB && (sample[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (length >= 2 && (sample[0] & 0xFF) == 0xFF && (sample[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (length >= 2 && (sample[0] & 0xFF) == 0xFE && (sample[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+
+        // Unmarked UTF-16 of mostly ASCII text has a zero in every other byte
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i < length; i++) {
+            if (sample[i] == 0) {
+                if (i % 2 == 0) {
+                    evenZeros++;
+                } else {
+                    oddZeros++;
+                }
+            }
+        }
+        if (oddZeros > length / 4 && evenZeros < oddZeros / 10) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (evenZeros > length / 4 && oddZeros < evenZeros / 10) {
+            return StandardCharsets.UTF_16BE;
+        }
+
+        // Not at end of input: a sequence cut off by the sample size is not an error
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(length);
+        boolean valid = !decoder.decode(ByteBuffer.wrap(sample), out, false).isError();
+        return valid ? StandardCharsets.UTF_8 : WINDOWS_1252;
+    }
+
+    static char detectDelimiter(byte[] sample, Charset charset, boolean complete) {
+        String text = new String(sample, charset);
+        int[][] counts = new int[SAMPLE_LINES][];
+        int lines = 0;
+        int[] current = new int[DELIMITERS.length];
+        boolean inQuotes = false;
+        boolean empty = true;
+        char previous = '\n';
+        for (int i = 0; i < text.length() && lines < SAMPLE_LINES; i++) {
+            char c = text.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            } else if (c == '\n' || c == '\r') {
+                if (!empty) {
+                    counts[lines++] = current;
+                    current = new int[DELIMITERS.length];
+                    empty = true;
+                }
+            } else {
+                // Only a quote opening a field quotes; inch marks and the like are text
+                if (c == '"' && (empty || isDelimiter(previous))) {
+                    inQuotes = true;
+                }
+                for (int d = 0; d < DELIMITERS.length; d++) {
+                    if (c == DELIMITERS[d]) {
+                        current[d]++;
+                    }
+                }
+                empty = false;
+            }
+            previous = c;
+        }
+        // The last line of a cut-off sample is partial
+        if (!empty && complete && lines < SAMPLE_LINES) {
+            counts[lines++] = current;
+        }
+        if (lines == 0) {
+            return DELIMITERS[0];
+        }
+
+        int best = -1;
+        int bestMatches = -1;
+        for (int d = 0; d < DELIMITERS.length; d++) {
+            int fields = counts[0][d];
+            if (fields == 0) {
+                continue;
+            }
+            int matches = 0;
+            for (int line = 1; line < lines; line++) {
+                if (counts[line][d] == fields) {
+                    matches++;
+                }
+            }
+            if (matches > bestMatches || (matches == bestMatches && fields > counts[0][best])) {
+                best = d;
+                bestMatches = matches;
+            }
+        }
+        return best >= 0 ? DELIMITERS[best] : DELIMITERS[0];
+    }
+
+    private static boolean isDelimiter(char c) {
+        for (char delimiter : DELIMITERS) {
+            if (c == delimiter) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,143 @@
+package com.csvuploader.service;
+
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@Service
+public class FileStorageService {
+    
+    private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private static final String PARTIAL_SUFFIX = ".part";
+    
+    private final Path fileStorageLocation;
+    
+    public FileStorageService() {
+        this.fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.fileStorageLocation);
+        } catch (Exception ex) {
+            throw new RuntimeException("Could not create upload directory", ex);
+        }
+    }
+    
+    /**
+     * A stored upload with its MD5 checksum and an estimate of its data rows
+     * (lines minus the header; quoted multi-line values count more than once).
+     * Both are taken over the decompressed content, so the same catalog sent
+     * plain or compressed is recognised as the same upload.
+     */
+    public record StoredFile(String path, String checksum, int estimatedRows) {}
+    
+    /**
+     * Moves the upload into uploads/ and computes its checksum in one pass
+     * without buffering the file in heap. Multipart parts already spooled to
+     * disk are renamed into place by transferTo, so the only read of the
+     * content is the digest scan over the stored file. Compressed uploads
+     * are stored as they are and decompressed in memory for the scan.
+     */
+    public StoredFile storeFile(MultipartFile file) throws IOException {
+        Path targetLocation = newStoragePath(file.getOriginalFilename());
+        // transferTo(File) lets the servlet container rename its temp file
+        file.transferTo(targetLocation.toFile());
+        
+        try {
+            return scan(targetLocation);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(targetLocation);
+            throw e;
+        }
+    }
+    
+    /**
+     * Where a new upload of the given name is stored. The name is stripped
+     * of any directories and prefixed with the current time.
+     */
+    public Path newStoragePath(String originalFileName) {
+        String fileName = System.currentTimeMillis() + "_" + FilenameUtils.getName(originalFileName);
+        return this.fileStorageLocation.resolve(fileName);
+    }
+    
+    /**
+     * Where a chunked upload is assembled until it is complete; the stored
+     * path only exists once every byte has arrived and been verified.
+     */
+    public Path partialPath(String storedFilePath) {
+        return Paths.get(storedFilePath + PARTIAL_SUFFIX);
+    }
+    
+    /**
+     * Chunked uploads do not survive a restart, so whatever they left
+     * half-written is removed on startup.
+     */
+    public void deletePartialFiles() {
+        try (DirectoryStream<Path> partials = Files.newDirectoryStream(fileStorageLocation, "*" + PARTIAL_SUFFIX)) {
+            for (Path partial : partials) {
+                Files.deleteIfExists(partial);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete partial uploads in {}", fileStorageLocation, e);
+        }
+    }
+    
+    StoredFile scan(Path path) throws IOException {
+        MessageDigest digest = md5();
+        byte[] bytes = new byte[BUFFER_SIZE];
+        long lines = 0;
+        int last = -1;
+        
+        try (InputStream in = Compression.decompress(Files.newInputStream(path))) {
+            int length;
+            while ((length = in.read(bytes)) != -1) {
+                digest.update(bytes, 0, length);
+                for (int i = 0; i < length; i++) {
+                    if (bytes[i] == '\n') {
+                        lines++;
+                    }
+                }
+                if (length > 0) {
+                    last = bytes[length - 1];
+                }
+            }
+        }
+        
+        // Count a final line without a trailing newline, then drop the header
+        if (last != -1 && last != '\n') {
+            lines++;
+        }
+        int estimatedRows = (int) Math.min(Integer.MAX_VALUE, Math.max(0, lines - 1));
+        
+        return new StoredFile(path.toString(), HexFormat.of().formatHex(digest.digest()), estimatedRows);
+    }
+    
+    static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+    
+    public void deleteFile(String filePath) {
+        try {
+            Files.deleteIfExists(Paths.get(filePath));
+        } catch (IOException e) {
+            log.warn("Could not delete file: {}", filePath, e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.Product;
+import com.csvuploader.model.UploadPreview;
+import com.csvuploader.model.UploadPreview.InvalidPrice;
+import com.csvuploader.model.UploadPreview.PriceChange;
+import com.csvuploader.repository.ProductBatchWriter;
+import com.csvuploader.repository.ProductBatchWriter.ExistingRow;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Tally of a preview: mapped batches go in in file order and are counted
+ * the way ProductBatchWriter.upsert would count them, against the stored
+ * rows and the rows earlier batches of the file would have written. Those
+ * are remembered by key, so memory grows with the distinct keys of the
+ * file, not with the catalog.
+ */
+final class ImportPreview {
+
+    private static final Comparator<PriceChange> BY_SIZE = Comparator.comparing(change -> change.change().abs());
+
+    // What the import would have stored for a key so far
+    private record PreviewedRow(Long rowHash, BigDecimal piecePrice) {
+    }
+
+    private final ProductBatchWriter productBatchWriter;
+    private final int sampleSize;
+    private final Map<String, PreviewedRow> previewed = new HashMap<>();
+
+    private int records;
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private int skipped;
+    private int invalidPriceRows;
+    private final List<InvalidPrice> invalidPrices = new ArrayList<>();
+    private int priceChanges;
+    // Smallest of the largest changes at the head
+    private final PriorityQueue<PriceChange> topPriceChanges;
+
+    ImportPreview(ProductBatchWriter productBatchWriter, int sampleSize) {
+        this.productBatchWriter = productBatchWriter;
+        this.sampleSize = sampleSize;
+        this.topPriceChanges = new PriorityQueue<>(BY_SIZE);
+    }
+
+    void add(List<Product> products, int skippedRecords, List<InvalidPrice> batchInvalidPrices) {
+        records += products.size() + skippedRecords;
+        skipped += skippedRecords;
+        invalidPriceRows += batchInvalidPrices.size();
+        for (InvalidPrice invalidPrice : batchInvalidPrices) {
+            if (invalidPrices.size() >= sampleSize) {
+                break;
+            }
+            invalidPrices.add(invalidPrice);
+        }
+
+        // Keys repeated within the batch collapse to their last row, as in upsert
+        Map<String, Product> byKey = new LinkedHashMap<>();
+        for (Product product : products) {
+            Product replaced = byKey.put(product.getUniqueKey(), product);
+            if (replaced != null) {
+                if (replaced.getRowHash().equals(product.getRowHash())) {
+                    unchanged++;
+                } else {
+                    updated++;
+                }
+            }
+        }
+
+        // Only keys the file has not written yet are looked up
+        List<String> storedKeys = new ArrayList<>();
+        for (String key : byKey.keySet()) {
+            if (!previewed.containsKey(key)) {
+                storedKeys.add(key);
+            }
+        }
+        Map<String, ExistingRow> existingRows = productBatchWriter.lookupExistingRows(storedKeys);
+
+        // Stored prices are only needed for the rows that would be overwritten
+        Map<Long, Product> overwritten = new HashMap<>();
+        for (Product product : byKey.values()) {
+            PreviewedRow earlier = previewed.get(product.getUniqueKey());
+            if (earlier != null) {
+                if (product.getRowHash().equals(earlier.rowHash())) {
+                    unchanged++;
+                } else {
+                    updated++;
+                    comparePrices(product, earlier.piecePrice());
+                }
+            } else {
+                ExistingRow existing = existingRows.get(product.getUniqueKey());
+                if (existing == null) {
+                    inserted++;
+                } else if (product.getRowHash().equals(existing.rowHash())) {
+                    unchanged++;
+                } else {
+                    updated++;
+                    overwritten.put(existing.id(), product);
+                }
+            }
+            previewed.put(product.getUniqueKey(), new PreviewedRow(product.getRowHash(), product.getPiecePrice()));
+        }
+
+        Map<Long, BigDecimal> storedPrices = productBatchWriter.findPiecePrices(overwritten.keySet());
+        overwritten.forEach((id, product) -> comparePrices(product, storedPrices.get(id)));
+    }
+
+    private void comparePrices(Product product, BigDecimal oldPrice) {
+        BigDecimal newPrice = product.getPiecePrice();
+        if (oldPrice == null || newPrice == null) {
+            if (oldPrice != newPrice) {
+                priceChanges++;
+            }
+            return;
+        }
+        if (oldPrice.compareTo(newPrice) == 0) {
+            return;
+        }
+        priceChanges++;
+        if (sampleSize == 0) {
+            return;
+        }
+        topPriceChanges.add(new PriceChange(product.getUniqueKey(), oldPrice, newPrice, newPrice.subtract(oldPrice)));
+        if (topPriceChanges.size() > sampleSize) {
+            topPriceChanges.poll();
+        }
+    }
+
+    UploadPreview result(String fileName, long elapsedMillis) {
+        List<PriceChange> largestFirst = new ArrayList<>(topPriceChanges);
+        largestFirst.sort(BY_SIZE.reversed());
+        return new UploadPreview(fileName, records, inserted, updated, unchanged, skipped, invalidPriceRows,
+                invalidPrices, priceChanges, largestFirst, elapsedMillis);
+    }
+}
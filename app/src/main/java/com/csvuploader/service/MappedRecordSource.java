@@ -0,0 +1,368 @@
+package com.csvuploader.service;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * RecordSource over the memory-mapped file, scanning its bytes directly.
+ * Only charsets that encode ASCII as single bytes and everything else with
+ * bytes of 0x80 and above qualify: UTF-8, ISO-8859-1 and windows-1252.
+ * The reader thread only finds record boundaries; transform workers split
+ * the fields of their own batch, and only up to the last column asked for.
+ * Values are built straight from the bytes with non-ASCII bytes dropped,
+ * which is what ValueSanitizer would make of the decoded text, so the
+ * columns we do not import are never decoded at all.
+ * <p>
+ * A record with a quote at the start of a field is handed to commons-csv
+ * whole, which covers escaped quotes, delimiters and line breaks inside
+ * quoted values. Positions are byte offsets into the file.
+ */
+public final class MappedRecordSource implements RecordSource {
+
+    private static final byte QUOTE = '"';
+
+    private static final Set<Charset> BYTE_SCANNABLE = Set.of(StandardCharsets.UTF_8, StandardCharsets.US_ASCII,
+            StandardCharsets.ISO_8859_1, Charset.forName("windows-1252"));
+
+    private final MappedByteBuffer buffer;
+
+    private final int limit;
+
+    private final byte delimiter;
+
+    private final Charset charset;
+
+    private final List<String> headers;
+
+    // Start of the next record to hand out; reader thread only
+    private int position;
+
+    // Whether the record scanned last needs the commons-csv fallback
+    private boolean lastQuoted;
+
+    private MappedRecordSource(MappedByteBuffer buffer, FileProfile profile) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.delimiter = (byte) profile.delimiter();
+        this.charset = profile.charset();
+        this.headers = readHeaders();
+    }
+
+    /**
+     * Maps the file and positions the source past its header, or at the
+     * checkpoint of a resumed import. Returns null for files this reader
+     * cannot take, which are then read with commons-csv: other charsets,
+     * files over 2 GB, and files whose lines end in a bare carriage return.
+     */
+    public static MappedRecordSource open(Path file, FileProfile profile, int committedRecords, Long position)
+            throws IOException {
+        if (!BYTE_SCANNABLE.contains(profile.charset()) || profile.delimiter() > 0x7F) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        MappedRecordSource source = new MappedRecordSource(buffer, profile);
+        if (source.headers == null) {
+            return null;
+        }
+        if (committedRecords > 0 && position != null) {
+            if (position > source.limit) {
+                throw new IOException("Checkpoint position " + position + " is beyond the end of the file");
+            }
+            source.position = position.intValue();
+        } else {
+            for (int i = 0; i < committedRecords && source.skipToNextRecord(); i++) {
+                source.position = source.scanRecord(source.position);
+            }
+        }
+        return source;
+    }
+
+    // Null when the header line ends in a bare carriage return
+    private List<String> readHeaders() {
+        if (!skipToNextRecord()) {
+            return List.of();
+        }
+        int start = position;
+        int end = scanRecord(start);
+        int contentEnd = contentEnd(start, end);
+        for (int i = start; i < contentEnd; i++) {
+            if (buffer.get(i) == '\r') {
+                return null;
+            }
+        }
+        position = end;
+
+        CSVRecord header = parseQuoted(start, contentEnd);
+        return header != null ? header.toList() : List.of();
+    }
+
+    @Override
+    public List<String> headers() {
+        return headers;
+    }
+
+    @Override
+    public Batch nextBatch(int maxRecords) {
+        int[] starts = new int[maxRecords];
+        int[] ends = new int[maxRecords];
+        boolean[] quoted = new boolean[maxRecords];
+        int count = 0;
+        while (count < maxRecords && skipToNextRecord()) {
+            int end = scanRecord(position);
+            starts[count] = position;
+            ends[count] = contentEnd(position, end);
+            quoted[count] = lastQuoted;
+            count++;
+            position = end;
+        }
+        if (count == 0) {
+            return null;
+        }
+        Long nextPosition = position < limit ? (long) position : null;
+        return new ByteRangeBatch(starts, ends, quoted, count, nextPosition);
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release: the mapping goes away with the buffer
+    }
+
+    // Steps over empty lines, which commons-csv ignores too; false at the end of the file
+    private boolean skipToNextRecord() {
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == '\n') {
+                position++;
+            } else if (b == '\r' && position + 1 < limit && buffer.get(position + 1) == '\n') {
+                position += 2;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the end of the record starting at from: the offset after its
+     * line feed, or the end of the file. Nearly every record is a plain run
+     * of bytes up to the next line feed; only a quote opening a field sends
+     * the scan through the quote-aware loop.
+     */
+    private int scanRecord(int from) {
+        for (int i = from; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                lastQuoted = false;
+                return i + 1;
+            }
+            if (b == QUOTE && (i == from || buffer.get(i - 1) == delimiter)) {
+                lastQuoted = true;
+                return quotedRecordEnd(i);
+            }
+        }
+        lastQuoted = false;
+        return limit;
+    }
+
+    // Continues a record scan from the quote that opens a field
+    private int quotedRecordEnd(int quote) {
+        boolean inQuotes = true;
+        boolean fieldStart = false;
+        for (int i = quote + 1; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (inQuotes) {
+                if (b == QUOTE) {
+                    if (i + 1 < limit && buffer.get(i + 1) == QUOTE) {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            } else if (b == '\n') {
+                return i + 1;
+            } else if (b == QUOTE && fieldStart) {
+                inQuotes = true;
+            } else {
+                fieldStart = b == delimiter;
+            }
+        }
+        return limit;
+    }
+
+    // End of the record's content: the line feed and a carriage return before it excluded
+    private int contentEnd(int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    private CSVRecord parseQuoted(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        String text = new String(bytes, charset);
+        try (CSVParser parser = CSVParser.parse(text, CommonsCsvRecordSource.recordFormat((char) delimiter))) {
+            Iterator<CSVRecord> records = parser.iterator();
+            return records.hasNext() ? records.next() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final class ByteRangeBatch implements Batch {
+        private final int[] starts;
+        private final int[] ends;
+        private final boolean[] quoted;
+        private final int size;
+        private final Long nextPosition;
+
+        ByteRangeBatch(int[] starts, int[] ends, boolean[] quoted, int size, Long nextPosition) {
+            this.starts = starts;
+            this.ends = ends;
+            this.quoted = quoted;
+            this.size = size;
+            this.nextPosition = nextPosition;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Long nextPosition() {
+            return nextPosition;
+        }
+
+        @Override
+        public Iterator<SourceRecord> iterator() {
+            Cursor cursor = new Cursor();
+            return new Iterator<>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < size;
+                }
+
+                @Override
+                public SourceRecord next() {
+                    if (index >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    cursor.reset(starts[index], ends[index], quoted[index]);
+                    index++;
+                    return cursor;
+                }
+            };
+        }
+    }
+
+    /**
+     * The record under iteration. Fields are split on demand, so a get
+     * scans no further than the column it asks for.
+     */
+    private final class Cursor implements SourceRecord {
+        private int start;
+        private int end;
+        private CSVRecord quotedRecord;
+
+        // fieldEnds[i] is the offset of the delimiter (or record end) after field i
+        private int[] fieldEnds = new int[16];
+        private int fields;
+        private int scanFrom;
+        private boolean complete;
+
+        private byte[] scratch = new byte[256];
+
+        void reset(int start, int end, boolean quoted) {
+            this.start = start;
+            this.end = end;
+            this.quotedRecord = quoted ? parseQuoted(start, end) : null;
+            this.fields = 0;
+            this.scanFrom = start;
+            this.complete = false;
+        }
+
+        @Override
+        public String get(int index) {
+            if (quotedRecord != null) {
+                return index < quotedRecord.size() ? quotedRecord.get(index) : null;
+            }
+            while (fields <= index && !complete) {
+                splitNext();
+            }
+            if (index >= fields) {
+                return null;
+            }
+            return decode(index == 0 ? start : fieldEnds[index - 1] + 1, fieldEnds[index]);
+        }
+
+        private void splitNext() {
+            int i = scanFrom;
+            while (i < end && buffer.get(i) != delimiter) {
+                i++;
+            }
+            if (fields == fieldEnds.length) {
+                fieldEnds = Arrays.copyOf(fieldEnds, fields * 2);
+            }
+            fieldEnds[fields++] = i;
+            if (i >= end) {
+                complete = true;
+            } else {
+                scanFrom = i + 1;
+            }
+        }
+
+        // Same result as ValueSanitizer.clean on the decoded value: the
+        // charset encodes every non-ASCII character with bytes of 0x80 and above only
+        private String decode(int from, int to) {
+            int length = to - from;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(from, scratch, 0, length);
+
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                byte b = scratch[i];
+                if (b >= 0) {
+                    scratch[count++] = b;
+                }
+            }
+            int first = 0;
+            while (first < count && scratch[first] <= ' ') {
+                first++;
+            }
+            while (count > first && scratch[count - 1] <= ' ') {
+                count--;
+            }
+            return new String(scratch, first, count - first, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.ProductView;
+import com.csvuploader.repository.ProductScanner;
+import com.csvuploader.service.ColumnMapping.Column;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Export of the current catalog, written row by row as ProductScanner
+ * streams it, so memory use does not depend on the catalog size.
+ */
+@Service
+public class ProductExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductExportService.class);
+
+    private static final String[] HEADER = Arrays.stream(Column.values()).map(Column::getHeader).toArray(String[]::new);
+
+    @Autowired
+    private ProductScanner productScanner;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Writes the products matching both filters (null matches everything)
+     * in id order and returns how many were written. out is flushed, not
+     * closed.
+     */
+    public long export(ExportFormat format, String styleNumber, Long uploadedFileId, Writer out) throws IOException {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        long start = System.nanoTime();
+        try {
+            Long rows = readOnly.execute(status -> {
+                try (Stream<ProductView> products = productScanner.streamProducts(styleNumber, uploadedFileId)) {
+                    return format == ExportFormat.CSV
+                            ? writeCsv(products.iterator(), out)
+                            : writeNdjson(products.iterator(), out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Exported {} products as {} in {} ms", rows, format.getName(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long writeCsv(Iterator<ProductView> products, Writer out) throws IOException {
+        CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT.builder().setHeader(HEADER).build());
+        long rows = 0;
+        while (products.hasNext()) {
+            ProductView product = products.next();
+            printer.printRecord(product.uniqueKey(), product.productTitle(), product.productDescription(),
+                    product.styleNumber(), product.sanmarMainframeColor(), product.size(), product.colorName(),
+                    product.piecePrice() != null ? product.piecePrice().toPlainString() : null);
+            rows++;
+        }
+        printer.flush();
+        return rows;
+    }
+
+    private long writeNdjson(Iterator<ProductView> products, Writer out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(ProductView.class);
+        long rows = 0;
+        while (products.hasNext()) {
+            out.write(writer.writeValueAsString(products.next()));
+            out.write('\n');
+            rows++;
+        }
+        out.flush();
+        return rows;
+    }
+}
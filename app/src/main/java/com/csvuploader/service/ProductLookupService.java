@@ -0,0 +1,161 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.ProductView;
+import com.csvuploader.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Product lookups by unique_key for the read API, served from a Caffeine
+ * cache bounded by size (W-TinyLFU eviction) and by time since load. Keys
+ * without a product are cached too. Imports invalidate exactly the keys each
+ * committed chunk wrote, so cached rows are never older than the last
+ * commit; the TTL only bounds changes made outside the application.
+ *
+ * Misses of one call are loaded with one query per IN_SLICE keys. A bulk
+ * load is not atomic with invalidation, so every key belongs to one of
+ * STRIPES stamps that invalidation bumps: a loaded row is cached first and
+ * then dropped again if its stripe moved while it was being read.
+ */
+@Service
+public class ProductLookupService {
+
+    public static final String CACHE_NAME = "products";
+
+    private static final int IN_SLICE = 1000;
+
+    private static final int STRIPES = 1024;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${csv.products.cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${csv.products.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${csv.products.lookup.max-keys:5000}")
+    private int maxKeys;
+
+    private Cache<String, Optional<ProductView>> cache;
+
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        // cache.gets{cache=products,result=hit|miss}, cache.evictions, cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public Optional<ProductView> find(String uniqueKey) {
+        return Optional.ofNullable(findAll(List.of(uniqueKey)).get(uniqueKey));
+    }
+
+    /**
+     * The products for keys, in request order, keys without a product left
+     * out. Throws IllegalArgumentException beyond csv.products.lookup.max-keys.
+     */
+    public Map<String, ProductView> findAll(Collection<String> uniqueKeys) {
+        Collection<String> keys = new LinkedHashSet<>(uniqueKeys);
+        if (keys.size() > maxKeys) {
+            throw new IllegalArgumentException("At most " + maxKeys + " keys per lookup");
+        }
+
+        Map<String, Optional<ProductView>> cached = cache.getAllPresent(keys);
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            if (!cached.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        Map<String, Optional<ProductView>> loaded = missing.isEmpty() ? Map.of() : load(missing);
+
+        Map<String, ProductView> products = new LinkedHashMap<>();
+        for (String key : keys) {
+            Optional<ProductView> product = cached.containsKey(key) ? cached.get(key) : loaded.get(key);
+            product.ifPresent(view -> products.put(key, view));
+        }
+        return products;
+    }
+
+    /**
+     * Drops keys whose stored row changed. Call after the change commits.
+     */
+    public void invalidate(Collection<String> uniqueKeys) {
+        for (String key : uniqueKeys) {
+            stamps.incrementAndGet(stripe(key));
+        }
+        cache.invalidateAll(uniqueKeys);
+    }
+
+    /**
+     * Drops every cached product of an upload whose rows were deleted. Call
+     * after the delete commits.
+     */
+    public void invalidateUpload(Long uploadedFileId) {
+        for (int i = 0; i < STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        cache.asMap().values().removeIf(product ->
+                product.isPresent() && uploadedFileId.equals(product.get().uploadedFileId()));
+    }
+
+    private Map<String, Optional<ProductView>> load(List<String> keys) {
+        long[] before = new long[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            before[i] = stamps.get(stripe(keys.get(i)));
+        }
+
+        Map<String, Optional<ProductView>> loaded = new LinkedHashMap<>();
+        for (String key : keys) {
+            loaded.put(key, Optional.empty());
+        }
+        for (int from = 0; from < keys.size(); from += IN_SLICE) {
+            List<String> slice = keys.subList(from, Math.min(keys.size(), from + IN_SLICE));
+            for (ProductView view : productRepository.findViewsByUniqueKeyIn(slice)) {
+                // Keep the newest row if legacy data holds duplicates for a key
+                Optional<ProductView> current = loaded.get(view.uniqueKey());
+                if (current.isEmpty() || current.get().id() < view.id()) {
+                    loaded.put(view.uniqueKey(), Optional.of(view));
+                }
+            }
+        }
+
+        cache.putAll(loaded);
+        for (int i = 0; i < keys.size(); i++) {
+            if (stamps.get(stripe(keys.get(i))) != before[i]) {
+                cache.invalidate(keys.get(i));
+            }
+        }
+        return loaded;
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
@@ -0,0 +1,80 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.Product;
+import com.csvuploader.model.UploadPreview.InvalidPrice;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.service.ColumnMapping.Column;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Transform stage of the import: turns a source record into a Product.
+ * Stateless, so the transform workers share it freely.
+ */
+public final class ProductMapper {
+
+    // Per-row logging, off unless logging.level.com.csvuploader.service.ProductMapper=DEBUG
+    private static final Logger log = LoggerFactory.getLogger(ProductMapper.class);
+
+    private ProductMapper() {
+    }
+
+    /**
+     * Maps one record to a detached Product, or returns null when the row
+     * has no UNIQUE_KEY and must be skipped. The row hash is filled in;
+     * persisting is left to the batch writer.
+     */
+    public static Product map(SourceRecord record, ColumnMapping columns, UploadedFile uploadedFile, int recordNumber) {
+        return map(record, columns, uploadedFile, recordNumber, null);
+    }
+
+    /**
+     * Same as above, also adding the record to invalidPrices, when given,
+     * if its price is not a number.
+     */
+    public static Product map(SourceRecord record, ColumnMapping columns, UploadedFile uploadedFile, int recordNumber,
+            List<InvalidPrice> invalidPrices) {
+        String uniqueKey = columns.get(record, Column.UNIQUE_KEY);
+        if (uniqueKey == null || uniqueKey.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Record {}: Skipped - empty UNIQUE_KEY", recordNumber);
+            }
+            return null;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Record {}: Processing UNIQUE_KEY = {}", recordNumber, uniqueKey);
+        }
+
+        Product product = new Product();
+        product.setUniqueKey(uniqueKey);
+        product.setProductTitle(columns.get(record, Column.PRODUCT_TITLE));
+        product.setProductDescription(columns.get(record, Column.PRODUCT_DESCRIPTION));
+        product.setStyleNumber(columns.get(record, Column.STYLE_NUMBER));
+        product.setSanmarMainframeColor(columns.get(record, Column.SANMAR_MAINFRAME_COLOR));
+        product.setSize(columns.get(record, Column.SIZE));
+        product.setColorName(columns.get(record, Column.COLOR_NAME));
+        product.setUploadedFile(uploadedFile);
+
+        // Handle price
+        String priceStr = columns.get(record, Column.PIECE_PRICE);
+        if (priceStr != null && !priceStr.isEmpty()) {
+            try {
+                product.setPiecePrice(new BigDecimal(priceStr.replace("$", "")));
+            } catch (NumberFormatException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Record {}: Invalid price format - {}", recordNumber, priceStr);
+                }
+                if (invalidPrices != null) {
+                    invalidPrices.add(new InvalidPrice(recordNumber, uniqueKey, priceStr));
+                }
+            }
+        }
+
+        product.setRowHash(RowHasher.hash(product));
+        return product;
+    }
+}
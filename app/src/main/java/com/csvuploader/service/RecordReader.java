@@ -0,0 +1,40 @@
+package com.csvuploader.service;
+
+import java.util.Locale;
+
+/**
+ * The RecordSource implementations an upload can be imported with, by the
+ * name stored on the upload and accepted by the upload endpoint.
+ */
+public enum RecordReader {
+    // commons-csv over a decoding Reader; handles anything the format allows
+    COMMONS_CSV("commons-csv"),
+    // Memory-mapped byte scanning with per-record commons-csv fallback for quoted fields
+    MAPPED("mapped");
+
+    private final String name;
+
+    RecordReader(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Looks a reader up by name; uploads stored before readers were
+     * selectable have none and use commons-csv.
+     */
+    public static RecordReader fromName(String name) {
+        if (name == null) {
+            return COMMONS_CSV;
+        }
+        for (RecordReader reader : values()) {
+            if (reader.name.equals(name.toLowerCase(Locale.ROOT))) {
+                return reader;
+            }
+        }
+        throw new IllegalArgumentException("Unknown record reader: " + name);
+    }
+}
@@ -0,0 +1,35 @@
+package com.csvuploader.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where an import reads its records from. The reader thread calls nextBatch
+ * to cut the file into batches in file order; each batch is then iterated by
+ * a transform worker, so an implementation may leave the expensive part of
+ * parsing to the workers. Positions are opaque to callers: they are stored
+ * as the checkpoint and handed back to the same implementation on resume.
+ */
+public interface RecordSource extends Closeable {
+
+    List<String> headers();
+
+    /**
+     * The next batch of up to maxRecords records, or null at the end of the
+     * file.
+     */
+    Batch nextBatch(int maxRecords) throws IOException;
+
+    /**
+     * Records of one batch. Iteration may hand out the same SourceRecord
+     * instance for every record, so callers must not keep them.
+     */
+    interface Batch extends Iterable<SourceRecord> {
+
+        int size();
+
+        // Position of the first record after the batch, null at the end of the file
+        Long nextPosition();
+    }
+}
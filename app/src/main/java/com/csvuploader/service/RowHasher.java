@@ -0,0 +1,51 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * 64-bit FNV-1a fingerprint of the imported columns of a product, used to
+ * tell whether a row changed without comparing every column against the
+ * stored one.
+ */
+public final class RowHasher {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private RowHasher() {
+    }
+
+    public static long hash(Product product) {
+        long hash = OFFSET_BASIS;
+        hash = mix(hash, product.getUniqueKey());
+        hash = mix(hash, product.getProductTitle());
+        hash = mix(hash, product.getProductDescription());
+        hash = mix(hash, product.getStyleNumber());
+        hash = mix(hash, product.getSanmarMainframeColor());
+        hash = mix(hash, product.getSize());
+        hash = mix(hash, product.getColorName());
+        hash = mix(hash, normalize(product.getPiecePrice()));
+        return hash;
+    }
+
+    // 10, 10.0 and 10.00 are the same price
+    private static String normalize(BigDecimal price) {
+        return price == null ? null : price.stripTrailingZeros().toPlainString();
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            // Distinguishes null from the empty string
+            return (hash ^ 0xff) * PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        // Field separator so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xfe) * PRIME;
+    }
+}
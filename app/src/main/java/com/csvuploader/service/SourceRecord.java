@@ -0,0 +1,14 @@
+package com.csvuploader.service;
+
+/**
+ * One record as the import sees it: raw values by column position. Values
+ * come back uncleaned; ColumnMapping applies ValueSanitizer on the way out.
+ */
+public interface SourceRecord {
+
+    /**
+     * Raw value at the position, or null when the record is too short to
+     * contain it.
+     */
+    String get(int index);
+}
@@ -0,0 +1,15 @@
+package com.csvuploader.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens the content of an upload from its first byte. Each call returns a
+ * new stream, so the content can be read more than once, e.g. sniffed and
+ * then parsed.
+ */
+@FunctionalInterface
+public interface StreamOpener {
+
+    InputStream open() throws IOException;
+}
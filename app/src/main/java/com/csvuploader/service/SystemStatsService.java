@@ -0,0 +1,125 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.ProductBatchWriter;
+import com.csvuploader.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Product counts for /api/debug/status, served from memory. The snapshot is
+ * built with one GROUP BY plus one distinct-key count, then kept current by
+ * the import path at every chunk commit. It is rebuilt from the database
+ * once it is older than csv.stats.max-staleness-seconds, which also bounds
+ * any drift, e.g. from a chunk committed while a rebuild was running, and
+ * is when uploads without products show up.
+ */
+@Service
+public class SystemStatsService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${csv.stats.max-staleness-seconds:300}")
+    private long maxStalenessSeconds;
+
+    /**
+     * Counts as served to callers; ageSeconds is the time since the
+     * snapshot was last rebuilt from the database.
+     */
+    public record SystemStats(int uploadedFiles, Map<String, Long> productsPerFile, long uniqueProducts,
+            long ageSeconds) {
+    }
+
+    private static final class FileProducts {
+        final String fileName;
+        long count;
+
+        FileProducts(String fileName, long count) {
+            this.fileName = fileName;
+            this.count = count;
+        }
+    }
+
+    // Guarded by this
+    private Map<Long, FileProducts> perFile;
+    private long uniqueProducts;
+    private long builtAtNanos;
+
+    private final Object rebuildLock = new Object();
+
+    public SystemStats current() {
+        SystemStats stats = copyIfFresh();
+        if (stats != null) {
+            return stats;
+        }
+        synchronized (rebuildLock) {
+            // Another caller may have rebuilt it while this one waited
+            stats = copyIfFresh();
+            return stats != null ? stats : rebuild();
+        }
+    }
+
+    /**
+     * Applies one committed chunk: inserted rows add new keys, updated rows
+     * move from the upload that owned them to this one. Only rows actually
+     * stored count; a key repeated within the chunk is updated but stored
+     * once.
+     */
+    public synchronized void recordChunk(UploadedFile uploadedFile, ProductBatchWriter.BatchResult written) {
+        if (perFile == null) {
+            return;
+        }
+        perFile.computeIfAbsent(uploadedFile.getId(), id -> new FileProducts(uploadedFile.getFileName(), 0))
+                .count += written.writtenKeys().size();
+        written.replacedByFile().forEach((fileId, replaced) -> {
+            FileProducts previous = perFile.get(fileId);
+            if (previous != null) {
+                previous.count -= replaced;
+            }
+        });
+        uniqueProducts += written.inserted();
+    }
+
+    // For changes the chunk deltas do not describe, such as bulk deletes
+    public synchronized void invalidate() {
+        perFile = null;
+    }
+
+    private synchronized boolean isStale() {
+        return perFile == null || System.nanoTime() - builtAtNanos > maxStalenessSeconds * 1_000_000_000L;
+    }
+
+    // Queries run outside the monitor so imports are never held up by them
+    private SystemStats rebuild() {
+        long startedAt = System.nanoTime();
+        Map<Long, FileProducts> counts = new HashMap<>();
+        for (Object[] row : productRepository.countProductsPerFile()) {
+            counts.put((Long) row[0], new FileProducts((String) row[1], (Long) row[2]));
+        }
+        long distinctKeys = productRepository.countDistinctUniqueKey();
+
+        synchronized (this) {
+            perFile = counts;
+            uniqueProducts = distinctKeys;
+            builtAtNanos = startedAt;
+            return copy();
+        }
+    }
+
+    private synchronized SystemStats copyIfFresh() {
+        return isStale() ? null : copy();
+    }
+
+    private synchronized SystemStats copy() {
+        Map<String, Long> productsPerFile = new LinkedHashMap<>();
+        perFile.forEach((id, file) -> productsPerFile.put(file.fileName + " (ID:" + id + ")", file.count));
+        long ageSeconds = (System.nanoTime() - builtAtNanos) / 1_000_000_000L;
+        return new SystemStats(perFile.size(), productsPerFile, uniqueProducts, ageSeconds);
+    }
+}
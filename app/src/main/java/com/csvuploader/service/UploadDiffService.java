@@ -0,0 +1,139 @@
+package com.csvuploader.service;
+
+import com.csvuploader.repository.ProductVersionScanner;
+import com.csvuploader.repository.ProductVersionScanner.VersionRow;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Diff report between two uploads: every key added, removed, or changed
+ * from one upload to the other, with a row per changed field. Both sides
+ * are streamed from product_versions in unique_key order and merge-joined,
+ * so memory use does not depend on the catalog size.
+ */
+@Service
+public class UploadDiffService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadDiffService.class);
+
+    private static final String[] HEADER = {"change", "UNIQUE_KEY", "field", "old_value", "new_value"};
+
+    @Autowired
+    private ProductVersionScanner productVersionScanner;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public record DiffSummary(int added, int removed, int changed, int unchanged) {
+    }
+
+    public DiffSummary writeDiff(Long fromFileId, Long toFileId, Writer out) throws IOException {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try {
+            DiffSummary summary = readOnly.execute(status -> {
+                try (Stream<VersionRow> fromRows = productVersionScanner.streamByUpload(fromFileId);
+                        Stream<VersionRow> toRows = productVersionScanner.streamByUpload(toFileId)) {
+                    return merge(new LastPerKey(fromRows.iterator()), new LastPerKey(toRows.iterator()), out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Diff of file {} against {}: {}", toFileId, fromFileId, summary);
+            return summary;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private DiffSummary merge(LastPerKey from, LastPerKey to, Writer out) throws IOException {
+        int added = 0;
+        int removed = 0;
+        int changed = 0;
+        int unchanged = 0;
+
+        CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT.builder().setHeader(HEADER).build());
+        VersionRow before = from.next();
+        VersionRow after = to.next();
+        while (before != null || after != null) {
+            int order = before == null ? 1 : after == null ? -1 : before.uniqueKey().compareTo(after.uniqueKey());
+            if (order < 0) {
+                printer.printRecord("removed", before.uniqueKey(), null, null, null);
+                removed++;
+                before = from.next();
+            } else if (order > 0) {
+                printer.printRecord("added", after.uniqueKey(), null, null, null);
+                added++;
+                after = to.next();
+            } else {
+                if (printChanges(printer, before, after)) {
+                    changed++;
+                } else {
+                    unchanged++;
+                }
+                before = from.next();
+                after = to.next();
+            }
+        }
+        printer.flush();
+        return new DiffSummary(added, removed, changed, unchanged);
+    }
+
+    private boolean printChanges(CSVPrinter printer, VersionRow before, VersionRow after) throws IOException {
+        if (before.rowHash() != null && before.rowHash().equals(after.rowHash())) {
+            return false;
+        }
+        boolean changed = false;
+        for (int i = 0; i < ProductVersionScanner.FIELDS.size(); i++) {
+            if (!Objects.equals(before.values()[i], after.values()[i])) {
+                printer.printRecord("changed", after.uniqueKey(), ProductVersionScanner.FIELDS.get(i).getHeader(),
+                        before.values()[i], after.values()[i]);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Collapses the versions of a key repeated within one upload to its
+     * last one, which is the row the import kept.
+     */
+    private static final class LastPerKey {
+        private final Iterator<VersionRow> rows;
+        private VersionRow pending;
+
+        LastPerKey(Iterator<VersionRow> rows) {
+            this.rows = rows;
+        }
+
+        VersionRow next() {
+            VersionRow current = pending != null ? pending : rows.hasNext() ? rows.next() : null;
+            pending = null;
+            if (current == null) {
+                return null;
+            }
+            while (rows.hasNext()) {
+                VersionRow row = rows.next();
+                if (!row.uniqueKey().equals(current.uniqueKey())) {
+                    pending = row;
+                    break;
+                }
+                current = row;
+            }
+            return current;
+        }
+    }
+}
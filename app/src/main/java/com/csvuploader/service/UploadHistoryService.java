@@ -0,0 +1,73 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadPage;
+import com.csvuploader.model.UploadSummary;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Upload history in fixed-size pages. The cursor is the (createdAt, id) of
+ * the last row of a page, encoded opaquely, so fetching page n costs the
+ * same as page 1 and rows arriving meanwhile never shift a page.
+ */
+@Service
+public class UploadHistoryService {
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Value("${csv.uploads.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${csv.uploads.max-page-size:200}")
+    private int maxPageSize;
+
+    public UploadPage page(String cursor, Integer limit) {
+        int size = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        // One extra row tells whether another page follows
+        PageRequest pageRequest = PageRequest.of(0, size + 1);
+
+        List<UploadSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = uploadedFileRepository.findLatestSummaries(pageRequest);
+        } else {
+            Cursor position = decode(cursor);
+            rows = uploadedFileRepository.findSummariesBefore(position.createdAt(), position.id(), pageRequest);
+        }
+
+        if (rows.size() <= size) {
+            return new UploadPage(rows, null);
+        }
+        List<UploadSummary> page = rows.subList(0, size);
+        UploadSummary last = page.get(size - 1);
+        return new UploadPage(List.copyOf(page), encode(new Cursor(last.createdAt(), last.id())));
+    }
+
+    private record Cursor(LocalDateTime createdAt, Long id) {
+    }
+
+    private static String encode(Cursor cursor) {
+        String raw = cursor.createdAt() + "|" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
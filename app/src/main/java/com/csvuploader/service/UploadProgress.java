@@ -0,0 +1,36 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+
+/**
+ * One progress update for an upload, as pushed to /api/uploads/{id}/events.
+ * recordsRead counts consumed file records (including skipped ones) and is
+ * what the rate and ETA are based on; rowsPerSecond and etaSeconds are only
+ * known while the import is running.
+ */
+public record UploadProgress(Long uploadId, String fileName, String status, int recordsRead,
+        Integer estimatedRows, int processedRows, Long rowsPerSecond, Long etaSeconds, String errorMessage) {
+
+    public static UploadProgress of(UploadedFile uploadedFile) {
+        return running(uploadedFile, orZero(uploadedFile.getCheckpointRecord()), null);
+    }
+
+    public static UploadProgress running(UploadedFile uploadedFile, int recordsRead, Long rowsPerSecond) {
+        Integer estimatedRows = uploadedFile.getEstimatedRows();
+        Long etaSeconds = null;
+        if (rowsPerSecond != null && rowsPerSecond > 0 && estimatedRows != null) {
+            etaSeconds = Math.max(0, estimatedRows - recordsRead) / rowsPerSecond;
+        }
+        return new UploadProgress(uploadedFile.getId(), uploadedFile.getFileName(), uploadedFile.getStatus(),
+                recordsRead, estimatedRows, orZero(uploadedFile.getProcessedRows()), rowsPerSecond, etaSeconds,
+                uploadedFile.getErrorMessage());
+    }
+
+    public boolean isFinished() {
+        return "completed".equals(status) || "failed".equals(status);
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+}
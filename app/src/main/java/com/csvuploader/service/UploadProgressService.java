@@ -0,0 +1,153 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fans import progress out to server-sent event subscribers. Imports publish
+ * status changes and per-chunk progress; the latest update of a running
+ * import is kept so a new subscriber starts from it instead of from the
+ * database, and chunk progress is throttled per upload.
+ */
+@Service
+public class UploadProgressService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadProgressService.class);
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Value("${csv.progress.min-interval-ms:500}")
+    private long minIntervalMillis;
+
+    @Value("${csv.progress.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMillis;
+
+    private final Map<Long, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    private final Map<Long, UploadProgress> latest = new ConcurrentHashMap<>();
+
+    private final Map<Long, Long> lastSentNanos = new ConcurrentHashMap<>();
+
+    /**
+     * Opens an event stream for an upload. The current state is sent first;
+     * a stream for a finished upload ends right after it.
+     */
+    public Optional<SseEmitter> subscribe(Long uploadId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        emitters.compute(uploadId, (id, subscribers) -> {
+            List<SseEmitter> list = subscribers != null ? subscribers : new CopyOnWriteArrayList<>();
+            list.add(emitter);
+            return list;
+        });
+        emitter.onCompletion(() -> unsubscribe(uploadId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(uploadId, emitter));
+
+        // Registered before reading the state, so nothing published after
+        // this point can be missed
+        UploadProgress current = latest.get(uploadId);
+        if (current == null) {
+            Optional<UploadedFile> uploadedFile = uploadedFileRepository.findById(uploadId);
+            if (uploadedFile.isEmpty()) {
+                unsubscribe(uploadId, emitter);
+                return Optional.empty();
+            }
+            current = UploadProgress.of(uploadedFile.get());
+        }
+
+        // A finished upload has nothing more to send, so its stream is not kept
+        if (!send(emitter, current)) {
+            unsubscribe(uploadId, emitter);
+        } else if (current.isFinished()) {
+            unsubscribe(uploadId, emitter);
+            emitter.complete();
+        }
+        return Optional.of(emitter);
+    }
+
+    boolean hasSubscribers(Long uploadId) {
+        return emitters.containsKey(uploadId);
+    }
+
+    // Drops the upload's entry along with its last subscriber
+    private void unsubscribe(Long uploadId, SseEmitter emitter) {
+        emitters.computeIfPresent(uploadId, (id, subscribers) -> {
+            subscribers.remove(emitter);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * Publishes a status change. Always delivered; a finished status also
+     * ends every open stream for the upload.
+     */
+    public void publishStatus(UploadedFile uploadedFile) {
+        publish(UploadProgress.of(uploadedFile));
+    }
+
+    /**
+     * Publishes chunk progress of a running import, at most once per
+     * csv.progress.min-interval-ms per upload.
+     */
+    public void publishProgress(UploadedFile uploadedFile, int recordsRead, long rowsPerSecond) {
+        long now = System.nanoTime();
+        Long last = lastSentNanos.get(uploadedFile.getId());
+        if (last != null && now - last < minIntervalMillis * 1_000_000) {
+            return;
+        }
+        lastSentNanos.put(uploadedFile.getId(), now);
+        publish(UploadProgress.running(uploadedFile, recordsRead, rowsPerSecond));
+    }
+
+    private void publish(UploadProgress progress) {
+        Long uploadId = progress.uploadId();
+        if (progress.isFinished()) {
+            latest.remove(uploadId);
+            lastSentNanos.remove(uploadId);
+        } else {
+            latest.put(uploadId, progress);
+        }
+
+        List<SseEmitter> subscribers = emitters.get(uploadId);
+        if (subscribers == null) {
+            return;
+        }
+        for (SseEmitter emitter : subscribers) {
+            if (!send(emitter, progress)) {
+                unsubscribe(uploadId, emitter);
+            } else if (progress.isFinished()) {
+                emitter.complete();
+            }
+        }
+        if (progress.isFinished()) {
+            emitters.remove(uploadId, subscribers);
+        }
+    }
+
+    // False when the browser went away; the container cleans up the stream
+    // itself and the import carries on
+    private boolean send(SseEmitter emitter, UploadProgress progress) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(progress, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping progress subscriber for upload {}: {}", progress.uploadId(), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+// src/main/java/com/csvuploader/service/ValidationService.java
+package com.csvuploader.service;
+
+import com.csvuploader.model.Product;
+import com.csvuploader.model.ProductVersion;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.ProductRepository;
+import com.csvuploader.repository.ProductVersionRepository;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+@Service
+public class ValidationService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Keys per IN query when looking expected keys up
+    private static final int LOOKUP_BATCH_SIZE = 1000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private ProductVersionRepository productVersionRepository;
+
+    /**
+     * Checks an upload against the keys QA expects, read one per line from
+     * the given reader (blank lines and a UNIQUE_KEY header are ignored).
+     * Keys are deduplicated into a set and looked up in batches, so the cost
+     * grows linearly with the key count; only counts and one page of missing
+     * keys, in input order, are returned.
+     */
+    public Map<String, Object> validateUpload(Long uploadedFileId, Reader expectedKeys, int page, int size)
+            throws IOException {
+        Set<String> keys = new LinkedHashSet<>();
+        BufferedReader reader = new BufferedReader(expectedKeys);
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            String key = ValueSanitizer.clean(line);
+            if (first && key != null && ColumnMapping.normalizeHeader(key).equals(ColumnMapping.Column.UNIQUE_KEY.name())) {
+                key = null;
+            }
+            first = false;
+            if (key != null && !key.isEmpty()) {
+                keys.add(key);
+            }
+        }
+        return validateUpload(uploadedFileId, keys, page, size);
+    }
+
+    public Map<String, Object> validateUpload(Long uploadedFileId, Collection<String> expectedUniqueKeys, int page,
+            int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        Map<String, Object> result = new HashMap<>();
+
+        // Every key the upload delivered, including rows it found unchanged
+        result.put("totalUploaded", productVersionRepository.countUniqueKeysByUploadedFileId(uploadedFileId));
+
+        if (expectedUniqueKeys != null) {
+            Set<String> expected = expectedUniqueKeys instanceof Set<String> set ? set : new LinkedHashSet<>(expectedUniqueKeys);
+
+            // A key counts as found when this upload delivered it. Its versions
+            // say so even for unchanged rows, which stay with the upload that
+            // wrote them
+            Set<String> found = new HashSet<>();
+            List<String> batch = new ArrayList<>(LOOKUP_BATCH_SIZE);
+            for (String key : expected) {
+                batch.add(key);
+                if (batch.size() == LOOKUP_BATCH_SIZE) {
+                    found.addAll(productVersionRepository.findUploadedUniqueKeys(uploadedFileId, batch));
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                found.addAll(productVersionRepository.findUploadedUniqueKeys(uploadedFileId, batch));
+            }
+
+            int missingCount = expected.size() - found.size();
+            List<String> missingPage = expected.stream()
+                    .filter(key -> !found.contains(key))
+                    .skip((long) page * size)
+                    .limit(size)
+                    .toList();
+
+            result.put("expectedKeys", expected.size());
+            result.put("foundKeys", found.size());
+            result.put("missingKeyCount", missingCount);
+            result.put("missingKeys", missingPage);
+            result.put("page", page);
+            result.put("size", size);
+            result.put("totalPages", (missingCount + size - 1) / size);
+        }
+
+        // Sample some records to show changes
+        List<Map<String, Object>> sampleRecords = new ArrayList<>();
+        for (Product product : productRepository.findTop5ByUploadedFileIdOrderById(uploadedFileId)) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("uniqueKey", product.getUniqueKey());
+            record.put("productTitle", product.getProductTitle());
+            record.put("piecePrice", product.getPiecePrice());
+            sampleRecords.add(record);
+        }
+        if (!sampleRecords.isEmpty()) {
+            result.put("sampleRecords", sampleRecords);
+        }
+
+        return result;
+    }
+
+    /**
+     * Latest and previous version of a key plus its history, newest first,
+     * read from product_versions in one indexed query.
+     */
+    public Map<String, Object> compareRecords(String uniqueKey, int limit) {
+        Map<String, Object> result = new HashMap<>();
+
+        // At least two versions are read so latest and previous can be compared
+        int shown = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int pageSize = Math.max(2, shown);
+        List<ProductVersion> versions = productVersionRepository.findHistory(uniqueKey, PageRequest.of(0, pageSize));
+
+        if (versions.isEmpty()) {
+            result.put("message", "No records found for key: " + uniqueKey);
+            return result;
+        }
+
+        if (versions.size() > 1) {
+            ProductVersion latest = versions.get(0);
+            ProductVersion previous = versions.get(1);
+
+            result.put("uniqueKey", uniqueKey);
+            result.put("latest", toMap(latest));
+            result.put("previous", toMap(previous));
+            result.put("changed", !Objects.equals(latest.getRowHash(), previous.getRowHash()));
+
+            // Show all versions
+            List<Map<String, Object>> allVersions = new ArrayList<>();
+            for (ProductVersion version : versions.subList(0, Math.min(shown, versions.size()))) {
+                Map<String, Object> entry = toMap(version);
+                entry.put("uploadedAt", version.getCreatedAt());
+                allVersions.add(entry);
+            }
+            result.put("allVersions", allVersions);
+            result.put("totalVersions", versions.size() < pageSize ? versions.size()
+                    : productVersionRepository.countByUniqueKey(uniqueKey));
+
+        } else {
+            result.put("message", "Only one version found for this key");
+            result.put("onlyVersion", toMap(versions.get(0)));
+        }
+
+        return result;
+    }
+
+    private Map<String, Object> toMap(ProductVersion version) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("productTitle", version.getProductTitle());
+        map.put("piecePrice", version.getPiecePrice());
+        map.put("uploadFile", version.getUploadedFile().getFileName());
+        map.put("fileId", version.getUploadedFile().getId());
+        return map;
+    }
+}
\ No newline at end of file
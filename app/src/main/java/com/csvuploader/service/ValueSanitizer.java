@@ -0,0 +1,51 @@
+package com.csvuploader.service;
+
+/**
+ * Cleans raw CSV values: drops every non-ASCII character and trims the
+ * result. Values that are already clean ASCII, which is nearly all of them,
+ * come back as the same String instance without allocating.
+ */
+public final class ValueSanitizer {
+
+    private ValueSanitizer() {
+    }
+
+    public static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        int length = value.length();
+        int firstNonAscii = -1;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) > 0x7F) {
+                firstNonAscii = i;
+                break;
+            }
+        }
+
+        // Fast path: trim() returns the same instance when there is nothing to strip
+        if (firstNonAscii < 0) {
+            return value.trim();
+        }
+
+        char[] chars = new char[length - 1];
+        value.getChars(0, firstNonAscii, chars, 0);
+        int count = firstNonAscii;
+        for (int i = firstNonAscii + 1; i < length; i++) {
+            char c = value.charAt(i);
+            if (c <= 0x7F) {
+                chars[count++] = c;
+            }
+        }
+
+        int start = 0;
+        while (start < count && chars[start] <= ' ') {
+            start++;
+        }
+        while (count > start && chars[count - 1] <= ' ') {
+            count--;
+        }
+        return new String(chars, start, count - start);
+    }
+}
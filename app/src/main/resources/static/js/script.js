@@ -36,13 +36,13 @@ document.addEventListener('DOMContentLoaded', function() {
     });
 
     function handleFileSelection(file) {
-        if (file && file.name.toLowerCase().endsWith('.csv')) {
+        if (file && /\.((csv|tsv|txt)(\.gz|\.zst)?|zip)$/.test(file.name.toLowerCase())) {
             selectedFileName.textContent = `Selected: ${file.name}`;
             selectedFileName.style.display = 'block';
             uploadBtn.disabled = false;
             fileInput.files = [file]; // Update the form file input
         } else {
-            alert('Please select a CSV file');
+            alert('Please select a CSV, TSV or TXT file, plain or compressed (.gz, .zip, .zst)');
             resetFileSelection();
         }
     }
@@ -78,9 +78,10 @@ document.addEventListener('DOMContentLoaded', function() {
             const result = await response.json();
 
             if (response.ok) {
-                alert('File uploaded successfully! Processing in background.');
+                alert('File uploaded successfully! Queued for processing.');
                 resetFileSelection();
-                refreshUploads();
+                addUploadRow(result.upload, true);
+                watchUpload(result.upload.id);
             } else {
                 alert('Upload failed: ' + (result.error || 'Unknown error'));
             }
@@ -92,31 +93,104 @@ document.addEventListener('DOMContentLoaded', function() {
         }
     });
 
-    // Real-time updates
-    async function refreshUploads() {
-        try {
-            const response = await fetch('/api/uploads');
-            const uploads = await response.json();
-            
-            const table = document.getElementById('uploadsTable');
-            table.innerHTML = uploads.map(upload => `
-                <tr>
-                    <td>${new Date(upload.createdAt).toLocaleString()}</td>
-                    <td>${upload.fileName}</td>
-                    <td>
-                        <span class="status status-${upload.status}">${upload.status}</span>
-                    </td>
-                    <td>${upload.processedRows || 0}</td>
-                </tr>
-            `).join('');
-        } catch (error) {
-            console.error('Error refreshing uploads:', error);
+    // Real-time updates: one server-sent event stream per unfinished upload
+    function addUploadRow(upload, newest) {
+        const row = document.createElement('tr');
+        row.dataset.uploadId = upload.id;
+        row.dataset.status = upload.status;
+        row.innerHTML = `
+            <td>${(upload.createdAt ? new Date(upload.createdAt) : new Date()).toLocaleString()}</td>
+            <td></td>
+            <td><span class="upload-status status status-${upload.status}">${upload.status}</span></td>
+            <td class="upload-rows">${upload.processedRows || 0}</td>
+        `;
+        row.children[1].textContent = upload.fileName;
+        const table = document.getElementById('uploadsTable');
+        if (newest) {
+            table.prepend(row);
+        } else {
+            table.append(row);
         }
     }
 
-    // Initial load and periodic refresh
-    refreshUploads();
-    setInterval(refreshUploads, 3000); // Refresh every 3 seconds
+    // Older history is fetched a page at a time with the cursor of the last page
+    const loadMoreBtn = document.getElementById('loadMoreUploads');
+    if (loadMoreBtn) {
+        loadMoreBtn.addEventListener('click', async () => {
+            try {
+                loadMoreBtn.disabled = true;
+                const response = await fetch(`/api/uploads?cursor=${encodeURIComponent(loadMoreBtn.dataset.cursor)}`);
+                const page = await response.json();
+                page.uploads.forEach(upload => addUploadRow(upload, false));
+                if (page.nextCursor) {
+                    loadMoreBtn.dataset.cursor = page.nextCursor;
+                } else {
+                    loadMoreBtn.remove();
+                }
+            } catch (error) {
+                console.error('Error loading uploads:', error);
+            } finally {
+                loadMoreBtn.disabled = false;
+            }
+        });
+    }
+
+    function watchUpload(uploadId) {
+        const events = new EventSource(`/api/uploads/${uploadId}/events`);
+        events.addEventListener('progress', (e) => {
+            const progress = JSON.parse(e.data);
+            updateUploadRow(progress);
+            if (progress.status === 'completed' || progress.status === 'failed') {
+                events.close(); // otherwise the browser reconnects
+            }
+        });
+        events.onerror = () => {
+            // Upload deleted or server gone; a page reload shows the final state
+            if (events.readyState === EventSource.CLOSED) {
+                console.error('Progress stream closed for upload', uploadId);
+            }
+        };
+    }
+
+    function updateUploadRow(progress) {
+        const row = document.querySelector(`#uploadsTable tr[data-upload-id="${progress.uploadId}"]`);
+        if (!row) {
+            return;
+        }
+        const status = row.querySelector('.upload-status');
+        status.textContent = progress.status;
+        status.className = `upload-status status status-${progress.status}`;
+        if (progress.errorMessage) {
+            status.title = progress.errorMessage;
+        }
+        row.querySelector('.upload-rows').textContent = formatProgress(progress);
+    }
+
+    function formatProgress(progress) {
+        if (progress.status !== 'processing' || !progress.estimatedRows) {
+            return progress.processedRows;
+        }
+        const percent = Math.min(100, Math.floor(progress.recordsRead * 100 / progress.estimatedRows));
+        let text = `${progress.processedRows} (${percent}%`;
+        if (progress.rowsPerSecond) {
+            text += `, ${progress.rowsPerSecond} rows/s`;
+        }
+        if (progress.etaSeconds != null) {
+            text += `, ETA ${formatDuration(progress.etaSeconds)}`;
+        }
+        return text + ')';
+    }
+
+    function formatDuration(seconds) {
+        const minutes = Math.floor(seconds / 60);
+        return minutes > 0 ? `${minutes}m ${seconds % 60}s` : `${seconds}s`;
+    }
+
+    document.querySelectorAll('#uploadsTable tr[data-upload-id]').forEach(row => {
+        if (row.dataset.status === 'queued' || row.dataset.status === 'processing') {
+            watchUpload(row.dataset.uploadId);
+        }
+    });
 });
 
 
@@ -166,8 +240,8 @@ async function compareRecord() {
 async function validateLatestUpload() {
     try {
         // First get the latest upload
-        const uploadsResponse = await fetch('/api/uploads');
-        const uploads = await uploadsResponse.json();
+        const uploadsResponse = await fetch('/api/uploads?limit=1');
+        const uploads = (await uploadsResponse.json()).uploads;
         
         if (uploads.length === 0) {
             alert('No uploads found');
@@ -185,7 +259,7 @@ async function validateLatestUpload() {
                 <div>Total Records: ${result.totalUploaded}</div>
                 <div>Status: ${latestUpload.status}</div>
                 ${result.missingKeys && result.missingKeys.length > 0 ? 
-                    `<div style="color: red;">Missing Keys: ${result.missingKeys.join(', ')}</div>` : 
+                    `<div style="color: red;">Missing Keys (${result.missingKeyCount}): ${result.missingKeys.join(', ')}</div>` : 
                     '<div style="color: green;">✅ All expected keys found</div>'}
                 ${result.sampleRecords ? `
                     <div style="margin-top: 10px;">
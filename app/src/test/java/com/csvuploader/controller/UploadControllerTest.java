@@ -0,0 +1,131 @@
+package com.csvuploader.controller;
+
+import com.csvuploader.config.AsyncConfig;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:csvuploader-controller-test",
+        "csv.ingestion.pool-size=1",
+        "csv.ingestion.queue-capacity=0"
+})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UploadControllerTest {
+
+    private static final byte[] CSV = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\nKEY1,One,1.00\nKEY2,Two,abc\n".getBytes();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier(AsyncConfig.PREVIEW_EXECUTOR)
+    private ThreadPoolTaskExecutor previewExecutor;
+
+    @Autowired
+    @Qualifier(AsyncConfig.INGESTION_EXECUTOR)
+    private ThreadPoolTaskExecutor ingestionExecutor;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Test
+    public void testSameFileIsUploadedOnce() throws Exception {
+        mockMvc.perform(multipart("/upload").file(file()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true));
+
+        UploadedFile uploadedFile = uploadedFileRepository
+                .findByChecksum(HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(CSV)))
+                .orElseThrow();
+        assertEquals(2, uploadedFile.getEstimatedRows());
+
+        mockMvc.perform(multipart("/upload").file(file()))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("This file has already been uploaded"));
+        assertEquals(1, uploadedFileRepository.count());
+
+        // Let the import finish before the context is closed
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!"completed".equals(uploadedFileRepository.findById(uploadedFile.getId()).orElseThrow().getStatus())
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void testUploadIsRejectedWhileTheIngestionQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ingestionExecutor.execute(() -> await(release));
+        try {
+            mockMvc.perform(multipart("/upload").file(file()))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string("Retry-After", "30"));
+        } finally {
+            release.countDown();
+        }
+
+        // The rejected upload is forgotten, so the same file can be sent again
+        assertEquals(0, uploadedFileRepository.count());
+    }
+
+    @Test
+    public void testPreviewIsRejectedWhileThePreviewPoolIsBusy() throws Exception {
+        // Answered asynchronously, off the request thread
+        MvcResult previewed = mockMvc.perform(multipart("/upload").file(file()).param("mode", "preview"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(previewed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.preview.inserted").value(2))
+                .andExpect(jsonPath("$.preview.invalidPriceRows").value(1))
+                .andExpect(jsonPath("$.alreadyUploaded").value(false));
+
+        CountDownLatch release = new CountDownLatch(1);
+        previewExecutor.execute(() -> await(release));
+        try {
+            MvcResult rejected = mockMvc.perform(multipart("/upload").file(file()).param("mode", "preview"))
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(rejected))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().exists("Retry-After"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static MockMultipartFile file() {
+        return new MockMultipartFile("file", "catalog.csv", "text/csv", CSV);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
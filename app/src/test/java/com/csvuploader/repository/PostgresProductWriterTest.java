@@ -0,0 +1,130 @@
+package com.csvuploader.repository;
+
+import com.csvuploader.model.Product;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.service.CSVProcessingService;
+import com.csvuploader.service.UploadDiffService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Runs the import path against PostgreSQL with the postgres profile: an
+ * embedded server by default, or the database in CSV_TEST_POSTGRES_URL
+ * (user postgres, no password), whose tables are dropped and recreated.
+ */
+@SpringBootTest(properties = {"csv.import.batch-size=2", "spring.jpa.hibernate.ddl-auto=create-drop"})
+@ActiveProfiles("postgres")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PostgresProductWriterTest {
+
+    private static EmbeddedPostgres embeddedPostgres;
+
+    private static String jdbcUrl;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private UploadDiffService uploadDiffService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductWriter productWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        jdbcUrl = System.getenv("CSV_TEST_POSTGRES_URL");
+        if (jdbcUrl == null) {
+            // initdb refuses to run as root, e.g. in some CI containers
+            assumeFalse("root".equals(System.getProperty("user.name")),
+                    "Embedded PostgreSQL cannot run as root; set CSV_TEST_POSTGRES_URL instead");
+            embeddedPostgres = EmbeddedPostgres.start();
+            jdbcUrl = embeddedPostgres.getJdbcUrl("postgres", "postgres");
+        }
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        if (embeddedPostgres != null) {
+            embeddedPostgres.close();
+        }
+    }
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> jdbcUrl);
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @Test
+    public void testImportsThroughCopy() throws Exception {
+        assertInstanceOf(PostgresProductWriter.class, productWriter);
+
+        // Two rows per chunk, so the staging table is reused and KEY1 is
+        // written twice within the upload
+        Long first = importCsv("first.csv", "UNIQUE_KEY,PRODUCT_TITLE,PRODUCT_DESCRIPTION,PIECE_PRICE\n" +
+                "KEY1,Shirt,\"Cotton, \"\"heavy\"\"\",10.00\n" +
+                "KEY2,Hat,,5.00\n" +
+                "KEY3,Mug,Stoneware,\n" +
+                "KEY1,Polo,Pique,11.50\n");
+        Long second = importCsv("second.csv", "UNIQUE_KEY,PRODUCT_TITLE,PRODUCT_DESCRIPTION,PIECE_PRICE\n" +
+                "KEY2,Hat,,5.00\n" +
+                "KEY1,Polo,Pique,12.00\n" +
+                "KEY4,Bag,Canvas,8.00\n");
+
+        assertEquals(4, productRepository.count());
+        Product polo = productRepository.findByUniqueKey("KEY1").get();
+        assertEquals("Polo", polo.getProductTitle());
+        assertEquals(0, new BigDecimal("12.00").compareTo(polo.getPiecePrice()));
+        assertEquals(second, polo.getUploadedFile().getId());
+        Product mug = productRepository.findByUniqueKey("KEY3").get();
+        assertEquals("Stoneware", mug.getProductDescription());
+        assertNull(mug.getPiecePrice());
+        assertEquals(first, mug.getUploadedFile().getId());
+
+        assertEquals(7, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_versions", Integer.class));
+        assertEquals("Cotton, \"heavy\"", jdbcTemplate.queryForObject(
+                "SELECT product_description FROM product_versions WHERE unique_key = 'KEY1' ORDER BY id LIMIT 1",
+                String.class));
+
+        StringWriter diff = new StringWriter();
+        assertEquals(new UploadDiffService.DiffSummary(1, 1, 1, 1),
+                uploadDiffService.writeDiff(first, second, diff));
+    }
+
+    private Long importCsv(String fileName, String csv) throws Exception {
+        UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile(fileName, "hash-" + fileName));
+        Path tempFile = Files.createTempFile("postgres", ".csv");
+        Files.write(tempFile, csv.getBytes());
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+        assertEquals("completed", uploadedFileRepository.findById(uploadedFile.getId()).get().getStatus());
+        return uploadedFile.getId();
+    }
+}
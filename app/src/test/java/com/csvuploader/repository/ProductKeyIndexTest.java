@@ -0,0 +1,72 @@
+package com.csvuploader.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductKeyIndexTest {
+
+    @Test
+    public void testStoresRowsAcrossResizes() {
+        ProductKeyIndex.KeyTable table = new ProductKeyIndex.KeyTable(0, 1_000_000);
+        for (int i = 1; i <= 100_000; i++) {
+            put(table, "KEY" + i, i, i % 10 == 0 ? null : (long) i * 31, (long) (i % 3) + 1);
+        }
+        assertEquals(100_000, table.size());
+
+        for (int i = 1; i <= 100_000; i++) {
+            ProductBatchWriter.ExistingRow row = get(table, "KEY" + i);
+            assertNotNull(row);
+            assertEquals(i, row.id());
+            assertEquals(i % 10 == 0 ? null : (Long) ((long) i * 31), row.rowHash());
+            assertEquals((long) (i % 3) + 1, row.uploadedFileId());
+        }
+        for (int i = 100_001; i <= 200_000; i++) {
+            assertNull(get(table, "KEY" + i));
+        }
+        // 32 bytes per slot plus one byte of bloom filter, at most three quarters full
+        assertTrue(table.bytes() <= 100_000 * ProductKeyIndex.KeyTable.MAX_BYTES_PER_KEY * 3 / 2);
+    }
+
+    @Test
+    public void testOverwritesAndRemovesByUpload() {
+        ProductKeyIndex.KeyTable table = new ProductKeyIndex.KeyTable(4, 100);
+        put(table, "A", 1, 10L, 1L);
+        put(table, "B", 2, 20L, 1L);
+        put(table, "C", 3, 30L, 2L);
+        put(table, "A", 1, 11L, 2L);
+
+        assertEquals(11L, get(table, "A").rowHash());
+        assertEquals(2L, get(table, "A").uploadedFileId());
+        assertEquals(0, table.duplicates());
+
+        table.removeUpload(1);
+        assertNull(get(table, "B"));
+        assertNotNull(get(table, "A"));
+        assertNotNull(get(table, "C"));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testKeepsNewestDuplicateAndStopsAtLimit() {
+        ProductKeyIndex.KeyTable table = new ProductKeyIndex.KeyTable(0, 3);
+        put(table, "A", 7, 1L, 1L);
+        put(table, "A", 5, 2L, 2L);
+        assertEquals(7, get(table, "A").id());
+        assertEquals(1, table.duplicates());
+
+        put(table, "B", 8, 1L, 1L);
+        put(table, "C", 9, 1L, 1L);
+        assertFalse(table.isOverflowed());
+        put(table, "D", 10, 1L, 1L);
+        assertTrue(table.isOverflowed());
+    }
+
+    private static void put(ProductKeyIndex.KeyTable table, String key, long id, Long rowHash, Long uploadId) {
+        table.put(ProductKeyIndex.KeyTable.hash(key), ProductKeyIndex.KeyTable.check(key), id, rowHash, uploadId);
+    }
+
+    private static ProductBatchWriter.ExistingRow get(ProductKeyIndex.KeyTable table, String key) {
+        return table.get(ProductKeyIndex.KeyTable.hash(key), ProductKeyIndex.KeyTable.check(key));
+    }
+}
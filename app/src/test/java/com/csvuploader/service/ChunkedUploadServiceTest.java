@@ -0,0 +1,231 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.ProductRepository;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:csvuploader-chunked-test",
+        "csv.import.batch-size=2",
+        "csv.chunked.min-chunk-size=8B",
+        "csv.chunked.max-chunks=16"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ChunkedUploadServiceTest {
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    public void testChunksInAnyOrderAssembleTheFile() throws Exception {
+        byte[] csv = "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\nKEY3,Three\n".getBytes(StandardCharsets.UTF_8);
+        ChunkedUploadService.ChunkedUploadState state = chunkedUploadService.start("chunked.csv", csv.length,
+                md5(csv), 10L, RecordReader.MAPPED, false);
+        assertEquals(6, state.chunkCount());
+        Long id = state.uploadId();
+
+        // Last chunk first, a corrupt chunk refused, a repeated chunk acknowledged
+        send(id, csv, 10, 5);
+        assertThrows(IllegalArgumentException.class,
+                () -> chunkedUploadService.receiveChunk(id, 2, md5(chunk(csv, 10, 2)), stream("corrupted!")));
+        send(id, csv, 10, 2);
+        send(id, csv, 10, 0);
+        send(id, csv, 10, 0);
+        assertEquals(List.of(1, 3, 4), chunkedUploadService.state(id).orElseThrow().missingChunks());
+        assertThrows(IllegalStateException.class, () -> chunkedUploadService.complete(id));
+
+        send(id, csv, 10, 3);
+        send(id, csv, 10, 1);
+        send(id, csv, 10, 4);
+        chunkedUploadService.complete(id);
+        assertTrue(chunkedUploadService.state(id).isEmpty());
+
+        UploadedFile uploadedFile = uploadedFileRepository.findById(id).orElseThrow();
+        assertEquals(md5(csv), uploadedFile.getChecksum());
+        assertEquals(3, uploadedFile.getEstimatedRows());
+        assertArrayEquals(csv, Files.readAllBytes(Path.of(uploadedFile.getStoredFilePath())));
+
+        csvProcessingService.processCsvFile(id, uploadedFile.getStoredFilePath()).get();
+        assertEquals(3, productRepository.count());
+        assertThrows(IllegalStateException.class,
+                () -> chunkedUploadService.start("again.csv", csv.length, md5(csv), 10L, RecordReader.MAPPED, false));
+    }
+
+    @Test
+    public void testTinyOrTooManyChunksAreRefusedBeforeTheUploadIsCreated() throws Exception {
+        byte[] csv = "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\nKEY3,Three\n".getBytes(StandardCharsets.UTF_8);
+        String checksum = md5(csv);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> chunkedUploadService.start("tiny.csv", csv.length, checksum, 7L, RecordReader.MAPPED, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> chunkedUploadService.start("huge.csv", 1L << 40, checksum, 8L, RecordReader.MAPPED, false));
+        assertEquals(0, uploadedFileRepository.count());
+
+        // A file smaller than the minimum is sent as one chunk
+        assertEquals(1, chunkedUploadService.start("small.csv", 4, md5("A\nB\n".getBytes(StandardCharsets.UTF_8)),
+                4L, RecordReader.MAPPED, false).chunkCount());
+    }
+
+    @Test
+    public void testIdleSessionsExpireWithoutNewUploads() throws Exception {
+        byte[] csv = "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\n".getBytes(StandardCharsets.UTF_8);
+        Long id = chunkedUploadService.start("idle.csv", csv.length, md5(csv), 16L, RecordReader.COMMONS_CSV, false)
+                .uploadId();
+        send(id, csv, 16, 0);
+        Path partial = fileStorageService.partialPath(uploadedFileRepository.findById(id).orElseThrow().getStoredFilePath());
+        assertTrue(Files.exists(partial));
+
+        chunkedUploadService.expireIdleSessions();
+        assertTrue(chunkedUploadService.state(id).isPresent());
+
+        chunkedUploadService.expireSessionsIdleFor(Duration.ZERO);
+        assertTrue(chunkedUploadService.state(id).isEmpty());
+        assertEquals("failed", uploadedFileRepository.findById(id).orElseThrow().getStatus());
+        assertFalse(Files.exists(partial));
+    }
+
+    @Test
+    public void testChecksumMismatchFailsTheUpload() throws Exception {
+        byte[] csv = "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\n".getBytes(StandardCharsets.UTF_8);
+        String declared = md5("something else".getBytes(StandardCharsets.UTF_8));
+        Long id = chunkedUploadService.start("wrong.csv", csv.length, declared, 16L, RecordReader.COMMONS_CSV, false)
+                .uploadId();
+        for (int i = 0; i < 3; i++) {
+            send(id, csv, 16, i);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.complete(id));
+        UploadedFile failed = uploadedFileRepository.findById(id).orElseThrow();
+        assertEquals("failed", failed.getStatus());
+        assertFalse(Files.exists(Path.of(failed.getStoredFilePath())));
+
+        // Sending the file again takes over the failed upload
+        assertEquals(id, chunkedUploadService.start("wrong.csv", csv.length, declared, 16L,
+                RecordReader.COMMONS_CSV, false).uploadId());
+    }
+
+    @Test
+    public void testFailedUploadIsTakenOverOnce() throws Exception {
+        byte[] csv = "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\n".getBytes(StandardCharsets.UTF_8);
+        UploadedFile failed = new UploadedFile("again.csv", md5(csv));
+        failed.setStatus("failed");
+        Long id = uploadedFileRepository.save(failed).getId();
+
+        // Both starts find the failed upload, only one may take it over
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<CompletableFuture<Long>> starts = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            starts.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    return chunkedUploadService.start("again.csv", csv.length, md5(csv), 16L,
+                            RecordReader.COMMONS_CSV, false).uploadId();
+                } catch (IllegalStateException e) {
+                    return null;
+                } catch (Exception e) {
+                    throw new IllegalArgumentException(e);
+                }
+            }));
+        }
+        List<Long> taken = new ArrayList<>();
+        for (CompletableFuture<Long> start : starts) {
+            Long uploadId = start.get(10, TimeUnit.SECONDS);
+            if (uploadId != null) {
+                taken.add(uploadId);
+            }
+        }
+        assertEquals(List.of(id), taken);
+        assertEquals("receiving", uploadedFileRepository.findById(id).orElseThrow().getStatus());
+    }
+
+    @Test
+    public void testStreamedUploadIsImportedAsItArrives() throws Exception {
+        StringBuilder content = new StringBuilder("UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n");
+        for (int i = 0; i < 2000; i++) {
+            content.append("KEY").append(i).append(",Title ").append(i).append(",").append(i).append(".00\n");
+        }
+        byte[] csv = content.toString().getBytes(StandardCharsets.UTF_8);
+        int chunkSize = 4096;
+        ChunkedUploadService.ChunkedUploadState state = chunkedUploadService.start("streamed.csv", csv.length,
+                md5(csv), (long) chunkSize, RecordReader.MAPPED, true);
+        Long id = state.uploadId();
+        UploadedFile uploadedFile = uploadedFileRepository.findById(id).orElseThrow();
+        assertEquals("commons-csv", uploadedFile.getRecordReader());
+
+        CompletableFuture<Void> imported = csvProcessingService.processCsvFile(id, uploadedFile.getStoredFilePath());
+
+        // Past the sniffing sample, rows get committed before the rest is sent
+        int half = state.chunkCount() / 2;
+        for (int i = 0; i < half; i++) {
+            send(id, csv, chunkSize, i);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (productRepository.count() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(productRepository.count() > 0);
+        assertFalse(imported.isDone());
+
+        for (int i = half; i < state.chunkCount(); i++) {
+            send(id, csv, chunkSize, i);
+        }
+        chunkedUploadService.complete(id);
+        imported.get(10, TimeUnit.SECONDS);
+
+        UploadedFile completed = uploadedFileRepository.findById(id).orElseThrow();
+        assertEquals("completed", completed.getStatus());
+        assertEquals(2000, completed.getProcessedRows());
+        assertEquals(2000, productRepository.count());
+    }
+
+    private void send(Long id, byte[] content, int chunkSize, int index) throws Exception {
+        byte[] chunk = chunk(content, chunkSize, index);
+        chunkedUploadService.receiveChunk(id, index, md5(chunk), new ByteArrayInputStream(chunk));
+    }
+
+    private static byte[] chunk(byte[] content, int chunkSize, int index) {
+        int from = index * chunkSize;
+        return Arrays.copyOfRange(content, from, Math.min(content.length, from + chunkSize));
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String md5(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes));
+    }
+}
@@ -0,0 +1,156 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.ProductBatchWriter;
+import com.csvuploader.repository.ProductKeyIndex;
+import com.csvuploader.repository.ProductRepository;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Small chunks, so the imports keep colliding on keys
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:csvuploader-concurrent-test",
+        "csv.import.batch-size=50",
+        "csv.ingestion.pool-size=4"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ConcurrentImportTest {
+
+    private static final int IMPORTS = 4;
+    private static final int ROWS = 2000;
+    private static final int SHIFT = 500;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductBatchWriter productBatchWriter;
+
+    @Autowired
+    private ProductKeyIndex productKeyIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testOverlappingImportsKeepOneRowPerKey() throws Exception {
+        // Import i holds keys [i * SHIFT, i * SHIFT + ROWS), titled after the import
+        List<CompletableFuture<Void>> imports = new ArrayList<>();
+        List<UploadedFile> uploads = new ArrayList<>();
+        for (int i = 0; i < IMPORTS; i++) {
+            Path path = writeCsv(i * SHIFT, i * SHIFT + ROWS, "Import " + i);
+            UploadedFile upload = uploadedFileRepository.save(new UploadedFile("import" + i + ".csv", "hash" + i));
+            uploads.add(upload);
+            imports.add(csvProcessingService.processCsvFile(upload.getId(), path.toString()));
+        }
+        CompletableFuture.allOf(imports.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+
+        int keys = (IMPORTS - 1) * SHIFT + ROWS;
+        assertEquals(keys, productRepository.count());
+        assertEquals(keys, productRepository.countDistinctUniqueKey());
+
+        int inserted = 0;
+        for (int i = 0; i < IMPORTS; i++) {
+            UploadedFile upload = uploadedFileRepository.findById(uploads.get(i).getId()).orElseThrow();
+            assertEquals("completed", upload.getStatus());
+            assertEquals(ROWS, upload.getInsertedRows() + upload.getUpdatedRows() + upload.getUnchangedRows());
+            inserted += upload.getInsertedRows();
+        }
+        assertEquals(keys, inserted);
+
+        // Every row is the one its owning import wrote, and the key index agrees with the table
+        Map<Long, Integer> importByUpload = new HashMap<>();
+        for (int i = 0; i < IMPORTS; i++) {
+            importByUpload.put(uploads.get(i).getId(), i);
+        }
+        List<String> allKeys = new ArrayList<>();
+        for (int key = 0; key < keys; key++) {
+            allKeys.add("KEY" + key);
+        }
+        productRepository.findAll().forEach(product -> assertEquals(
+                "Import " + importByUpload.get(product.getUploadedFile().getId()), product.getProductTitle()));
+        assertTrue(productKeyIndex.isLoaded());
+        assertEquals(productBatchWriter.findExistingRows(allKeys), productKeyIndex.lookup(allKeys));
+        assertTrue(productRepository.findByUniqueKey("KEY1200").isPresent());
+    }
+
+    @Test
+    public void testRetryDeletesWhileAnotherImportWritesTheSameRows() throws Exception {
+        List<String> allKeys = new ArrayList<>();
+        for (int key = 0; key < ROWS; key++) {
+            allKeys.add("KEY" + key);
+        }
+        for (int round = 0; round < 3; round++) {
+            // A new title each round, so the first import owns every row before its retry
+            String title = "Round " + round;
+            UploadedFile first = uploadedFileRepository.save(new UploadedFile("first" + round + ".csv", "first" + round));
+            csvProcessingService.processCsvFile(first.getId(), writeCsv(0, ROWS, title).toString())
+                    .get(60, TimeUnit.SECONDS);
+
+            // The retry starts from scratch, deleting the rows the second import finds unchanged
+            first = uploadedFileRepository.findById(first.getId()).orElseThrow();
+            first.setStatus("failed");
+            first.setCheckpointRecord(0);
+            uploadedFileRepository.save(first);
+            UploadedFile second = uploadedFileRepository.save(new UploadedFile("second" + round + ".csv", "second" + round));
+            CompletableFuture.allOf(
+                    csvProcessingService.processCsvFile(first.getId(), writeCsv(0, ROWS, title).toString()),
+                    csvProcessingService.processCsvFile(second.getId(), writeCsv(0, ROWS, title).toString())
+            ).get(60, TimeUnit.SECONDS);
+
+            assertEquals("completed", uploadedFileRepository.findById(first.getId()).orElseThrow().getStatus());
+            assertEquals("completed", uploadedFileRepository.findById(second.getId()).orElseThrow().getStatus());
+            assertEquals(ROWS, productRepository.count());
+            assertEquals(productBatchWriter.findExistingRows(allKeys), productKeyIndex.lookup(allKeys));
+        }
+    }
+
+    @Test
+    public void testDuplicatedKeysOfOlderDatabasesAreRemoved() {
+        UploadedFile first = uploadedFileRepository.save(new UploadedFile("first.csv", "hash-first"));
+        UploadedFile second = uploadedFileRepository.save(new UploadedFile("second.csv", "hash-second"));
+        jdbcTemplate.execute("ALTER TABLE products DROP CONSTRAINT uk_products_unique_key");
+        jdbcTemplate.update("INSERT INTO products (id, unique_key, product_title, uploaded_file_id) VALUES " +
+                "(1, 'KEY1', 'Old', ?), (2, 'KEY1', 'New', ?), (3, 'KEY2', 'Only', ?)",
+                first.getId(), second.getId(), first.getId());
+
+        assertEquals(1, productBatchWriter.enforceUniqueKeys());
+        assertEquals("New", productRepository.findByUniqueKey("KEY1").orElseThrow().getProductTitle());
+        assertEquals(0, productBatchWriter.enforceUniqueKeys());
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO products (id, unique_key, uploaded_file_id) VALUES (4, 'KEY2', ?)", second.getId()));
+    }
+
+    // Keys [from, to), every row titled title and priced 1.00
+    private static Path writeCsv(int from, int to, String title) throws Exception {
+        StringBuilder csv = new StringBuilder("UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n");
+        for (int key = from; key < to; key++) {
+            csv.append("KEY").append(key).append(',').append(title).append(",1.00\n");
+        }
+        Path path = Files.createTempFile("concurrent", ".csv");
+        Files.writeString(path, csv);
+        return path;
+    }
+}
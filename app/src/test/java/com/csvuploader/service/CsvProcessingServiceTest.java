@@ -0,0 +1,469 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.Product;
+import com.csvuploader.model.UploadPreview;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.ProductKeyIndex;
+import com.csvuploader.repository.ProductRepository;
+import com.csvuploader.repository.UploadedFileRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture; // Add this import
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tiny batches so every test runs through several pipeline chunks
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:csvuploader-test",
+        "csv.import.batch-size=2"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class CsvProcessingServiceTest {
+
+    @Autowired
+    private CSVProcessingService csvProcessingService; // Match the exact class name
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UploadProgressService uploadProgressService;
+
+    @Autowired
+    private SystemStatsService systemStatsService;
+
+    @Autowired
+    private ProductKeyIndex productKeyIndex;
+
+    @Test
+    public void testUpsertLogic() throws Exception {
+        // Create test CSV content
+        String initialCsv = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,Initial Product,10.00\n" +
+                "KEY2,Another Product,20.00\n";
+
+        String updateCsv = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,Updated Product,15.00\n" + // Update existing
+                "KEY3,New Product,25.00\n"; // Add new
+
+        // Process initial file
+        UploadedFile initialFile = new UploadedFile("initial.csv", "hash1");
+        initialFile = uploadedFileRepository.save(initialFile);
+
+        Path tempFile = Files.createTempFile("test", ".csv");
+        Files.write(tempFile, initialCsv.getBytes());
+
+        // Handle the CompletableFuture return type
+        CompletableFuture<Void> future1 = csvProcessingService.processCsvFile(initialFile.getId(), tempFile.toString());
+        future1.get(); // Wait for completion
+
+        // Process update file
+        UploadedFile updateFile = new UploadedFile("update.csv", "hash2");
+        updateFile = uploadedFileRepository.save(updateFile);
+
+        Path tempFile2 = Files.createTempFile("test2", ".csv");
+        Files.write(tempFile2, updateCsv.getBytes());
+
+        // Handle the CompletableFuture return type
+        CompletableFuture<Void> future2 = csvProcessingService.processCsvFile(updateFile.getId(), tempFile2.toString());
+        future2.get(); // Wait for completion
+
+        // Verify results
+        assertEquals(3, productRepository.count()); // KEY1, KEY2, KEY3
+
+        var updatedProduct = productRepository.findByUniqueKeyAndUploadedFileId("KEY1", updateFile.getId());
+        assertTrue(updatedProduct.isPresent());
+        assertEquals("Updated Product", updatedProduct.get().getProductTitle());
+        assertEquals(15.00, updatedProduct.get().getPiecePrice().doubleValue());
+
+        var newProduct = productRepository.findByUniqueKeyAndUploadedFileId("KEY3", updateFile.getId());
+        assertTrue(newProduct.isPresent());
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        String header = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n";
+        String committed = "KEY1,First Product,10.00\n" +
+                "KEY2,Second Product,20.00\n";
+        String csv = header + committed +
+                "KEY3,Third Product,30.00\n" +
+                "KEY4,Fourth Product,40.00\n";
+
+        Path tempFile = Files.createTempFile("resume", ".csv");
+        Files.write(tempFile, csv.getBytes());
+
+        // Simulate an import that failed after committing the first two records
+        UploadedFile uploadedFile = new UploadedFile("resume.csv", "hash-resume");
+        uploadedFile.setStatus("failed");
+        uploadedFile.setCheckpointRecord(2);
+        uploadedFile.setCheckpointPosition((long) (header.length() + committed.length()));
+        uploadedFile.setProcessedRows(2);
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+        assertEquals(2, productRepository.count()); // only KEY3 and KEY4 were written
+        assertTrue(productRepository.findByUniqueKey("KEY3").isPresent());
+        assertTrue(productRepository.findByUniqueKey("KEY1").isEmpty());
+
+        UploadedFile resumed = uploadedFileRepository.findById(uploadedFile.getId()).orElseThrow();
+        assertEquals("completed", resumed.getStatus());
+        assertEquals(4, resumed.getProcessedRows());
+        assertEquals(4, resumed.getCheckpointRecord());
+    }
+
+    @Test
+    public void testQueuedImportDoesNotStartAfterShutdown() throws Exception {
+        Path tempFile = Files.createTempFile("shutdown", ".csv");
+        Files.write(tempFile, "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\nKEY1,First Product,10.00\n".getBytes());
+
+        UploadedFile uploadedFile = new UploadedFile("shutdown.csv", "hash-shutdown");
+        uploadedFile.setStatus("queued");
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+
+        csvProcessingService.stopImports();
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+        // Left queued for the next startup to mark resumable, with the file kept
+        assertEquals("queued", uploadedFileRepository.findById(uploadedFile.getId()).orElseThrow().getStatus());
+        assertEquals(0, productRepository.count());
+        assertTrue(Files.exists(tempFile));
+        Files.delete(tempFile);
+    }
+
+    @Test
+    public void testMappedReaderResumesFromByteOffset() throws Exception {
+        String header = "UNIQUE_KEY\tPRODUCT_TITLE\tPRODUCT_DESCRIPTION\tPIECE_PRICE\n";
+        // Non-ASCII text makes byte offsets differ from character offsets
+        String committed = "KEY1\tCaf\u00E9 Tee\tSoft\t10.00\n" +
+                "KEY2\tCore\u00AE Hat\tWarm\t20.00\n";
+        String csv = header + committed +
+                "KEY3\tMug\t\"Holds 12\"\" of\ncoffee\"\t30.00\n" +
+                "KEY4\tBag\tCanvas\t$40.00\n";
+
+        Path tempFile = Files.createTempFile("resume-mapped", ".tsv");
+        Files.write(tempFile, csv.getBytes(StandardCharsets.UTF_8));
+
+        UploadedFile uploadedFile = new UploadedFile("resume-mapped.tsv", "hash-resume-mapped");
+        uploadedFile.setRecordReader("mapped");
+        uploadedFile.setStatus("failed");
+        uploadedFile.setCheckpointRecord(2);
+        uploadedFile.setCheckpointPosition((long) (header + committed).getBytes(StandardCharsets.UTF_8).length);
+        uploadedFile.setProcessedRows(2);
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+        assertEquals(2, productRepository.count());
+        Product mug = productRepository.findByUniqueKey("KEY3").orElseThrow();
+        assertEquals("Mug", mug.getProductTitle());
+        assertEquals("Holds 12\" of\ncoffee", mug.getProductDescription());
+        assertEquals(0, new BigDecimal("40.00").compareTo(
+                productRepository.findByUniqueKey("KEY4").orElseThrow().getPiecePrice()));
+
+        UploadedFile resumed = uploadedFileRepository.findById(uploadedFile.getId()).orElseThrow();
+        assertEquals("completed", resumed.getStatus());
+        assertEquals(4, resumed.getProcessedRows());
+    }
+
+    @Test
+    public void testDetectsProfileOfUtf16SemicolonFile() throws Exception {
+        String csv = "\uFEFFUnique Key;Product Title;Style Number;Price\r\n" +
+                "KEY1;Caf\u00E9 Tee;S1;10,00\r\n" +
+                "KEY2;\"Hat; wool\";S2;20\r\n";
+
+        Path tempFile = Files.createTempFile("profile", ".txt");
+        Files.write(tempFile, csv.getBytes(StandardCharsets.UTF_16LE));
+
+        UploadedFile uploadedFile = new UploadedFile("profile.txt", "hash-profile");
+        uploadedFile.setRecordReader("mapped");
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+        assertEquals("Caf Tee", productRepository.findByUniqueKey("KEY1").orElseThrow().getProductTitle());
+        Product hat = productRepository.findByUniqueKey("KEY2").orElseThrow();
+        assertEquals("Hat; wool", hat.getProductTitle());
+        assertEquals("S2", hat.getStyleNumber());
+        assertEquals(0, new BigDecimal("20").compareTo(hat.getPiecePrice()));
+
+        UploadedFile imported = uploadedFileRepository.findById(uploadedFile.getId()).orElseThrow();
+        assertEquals("completed", imported.getStatus());
+        assertEquals(";", imported.getDelimiter());
+        assertEquals("UTF-16LE", imported.getCharset());
+        assertTrue(imported.getHeaderMapping().startsWith("UNIQUE_KEY=0,PRODUCT_TITLE=1,PRODUCT_DESCRIPTION=-1,STYLE#=2"));
+    }
+
+    @Test
+    public void testImportsCompressedFiles() throws Exception {
+        byte[] csv = "UNIQUE_KEY\tPRODUCT_TITLE\tPIECE_PRICE\nKEY1\tOne\t1.00\nKEY2\t\"Two\nlines\"\t2.00\n"
+                .getBytes(StandardCharsets.UTF_8);
+        List<byte[]> files = List.of(FileStorageServiceTest.gzip(csv), FileStorageServiceTest.zip(csv),
+                FileStorageServiceTest.zstd(csv));
+        for (int i = 0; i < files.size(); i++) {
+            Path tempFile = Files.createTempFile("compressed", ".bin");
+            Files.write(tempFile, files.get(i));
+            UploadedFile uploadedFile = new UploadedFile("compressed-" + i, "hash-compressed-" + i);
+            // Mapped reading cannot take compressed files and falls back
+            uploadedFile.setRecordReader("mapped");
+            uploadedFile = uploadedFileRepository.save(uploadedFile);
+
+            csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+            UploadedFile imported = uploadedFileRepository.findById(uploadedFile.getId()).orElseThrow();
+            assertEquals("completed", imported.getStatus());
+            assertEquals(2, imported.getProcessedRows());
+            assertEquals("\t", imported.getDelimiter());
+            assertEquals("Two\nlines", productRepository.findByUniqueKey("KEY2").orElseThrow().getProductTitle());
+        }
+    }
+
+    @Test
+    public void testDuplicateKeysLastRowWins() throws Exception {
+        StringBuilder csv = new StringBuilder("UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n");
+        for (int i = 1; i <= 25; i++) {
+            csv.append("KEY").append(i % 3).append(",Title ").append(i).append(",").append(i).append(".00\n");
+        }
+
+        UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile("dupes.csv", "hash-dupes"));
+        Path tempFile = Files.createTempFile("dupes", ".csv");
+        Files.write(tempFile, csv.toString().getBytes());
+
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+        // Rows 24, 25 and 23 are the last ones for KEY0, KEY1 and KEY2
+        assertEquals(3, productRepository.count());
+        assertEquals("Title 24", productRepository.findByUniqueKey("KEY0").orElseThrow().getProductTitle());
+        assertEquals("Title 25", productRepository.findByUniqueKey("KEY1").orElseThrow().getProductTitle());
+        assertEquals("Title 23", productRepository.findByUniqueKey("KEY2").orElseThrow().getProductTitle());
+        assertEquals(25, uploadedFileRepository.findById(uploadedFile.getId()).orElseThrow().getProcessedRows());
+    }
+
+    @Test
+    public void testUnchangedRowsAreSkipped() throws Exception {
+        String firstCsv = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,Same Product,10.00\n" +
+                "KEY2,Old Title,20.00\n";
+
+        String secondCsv = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,Same Product,10.0\n" + // same price, different formatting
+                "KEY2,New Title,20.00\n" +
+                ",No Key,1.00\n" +
+                "KEY3,Brand New,30.00\n";
+
+        UploadedFile firstFile = uploadedFileRepository.save(new UploadedFile("first.csv", "hash-first"));
+        Path firstPath = Files.createTempFile("first", ".csv");
+        Files.write(firstPath, firstCsv.getBytes());
+        csvProcessingService.processCsvFile(firstFile.getId(), firstPath.toString()).get();
+
+        UploadedFile secondFile = uploadedFileRepository.save(new UploadedFile("second.csv", "hash-second"));
+        Path secondPath = Files.createTempFile("second", ".csv");
+        Files.write(secondPath, secondCsv.getBytes());
+        csvProcessingService.processCsvFile(secondFile.getId(), secondPath.toString()).get();
+
+        UploadedFile result = uploadedFileRepository.findById(secondFile.getId()).orElseThrow();
+        assertEquals(1, result.getInsertedRows());
+        assertEquals(1, result.getUpdatedRows());
+        assertEquals(1, result.getUnchangedRows());
+        assertEquals(1, result.getSkippedRows());
+        assertEquals(3, result.getProcessedRows());
+
+        // The unchanged row was not rewritten, so it still belongs to the first upload
+        assertTrue(productRepository.findByUniqueKeyAndUploadedFileId("KEY1", firstFile.getId()).isPresent());
+        assertTrue(productRepository.findByUniqueKeyAndUploadedFileId("KEY2", secondFile.getId()).isPresent());
+    }
+
+    @Test
+    public void testImportMetrics() throws Exception {
+        String csv = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,First Product,10.00\n" +
+                "KEY2,Second Product,20.00\n" +
+                ",No Key,1.00\n";
+
+        UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile("metrics.csv", "hash-metrics"));
+        Path tempFile = Files.createTempFile("metrics", ".csv");
+        Files.write(tempFile, csv.getBytes());
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+        assertEquals(2, meterRegistry.get("csv.import.rows").tag("result", "inserted").counter().count());
+        assertEquals(1, meterRegistry.get("csv.import.rows").tag("result", "skipped").counter().count());
+        assertEquals(0, meterRegistry.get("csv.import.rows").tag("result", "failed").counter().count());
+        assertEquals(2, meterRegistry.get("csv.import.write").timer().count()); // batch size 2
+        assertEquals(1, meterRegistry.get("csv.import.duration").tag("outcome", "completed").timer().count());
+        assertEquals(0, meterRegistry.get("csv.import.active").gauge().value());
+    }
+
+    @Test
+    public void testUploadProgress() throws Exception {
+        UploadedFile uploadedFile = new UploadedFile("progress.csv", "hash-progress");
+        uploadedFile.setStatus("processing");
+        uploadedFile.setEstimatedRows(1000);
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+
+        UploadProgress progress = UploadProgress.running(uploadedFile, 400, 200L);
+        assertEquals(3L, progress.etaSeconds()); // 600 rows left at 200 rows/s
+        assertFalse(progress.isFinished());
+
+        assertTrue(uploadProgressService.subscribe(uploadedFile.getId()).isPresent());
+        assertTrue(uploadProgressService.hasSubscribers(uploadedFile.getId()));
+        assertTrue(uploadProgressService.subscribe(-1L).isEmpty());
+        assertFalse(uploadProgressService.hasSubscribers(-1L));
+
+        // Finishing ends the streams; later subscribers get the final state and are not kept
+        uploadedFile.setStatus("completed");
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+        uploadProgressService.publishStatus(uploadedFile);
+        assertFalse(uploadProgressService.hasSubscribers(uploadedFile.getId()));
+        assertTrue(uploadProgressService.subscribe(uploadedFile.getId()).isPresent());
+        assertFalse(uploadProgressService.hasSubscribers(uploadedFile.getId()));
+    }
+
+    @Test
+    public void testStatsFollowChunkCommits() throws Exception {
+        UploadedFile firstFile = uploadedFileRepository.save(new UploadedFile("first.csv", "hash-stats-1"));
+        Path firstPath = Files.createTempFile("stats1", ".csv");
+        Files.write(firstPath, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\n".getBytes());
+        csvProcessingService.processCsvFile(firstFile.getId(), firstPath.toString()).get();
+
+        // Built from the database here, then only updated by the next import
+        assertEquals(2, systemStatsService.current().uniqueProducts());
+
+        UploadedFile secondFile = uploadedFileRepository.save(new UploadedFile("second.csv", "hash-stats-2"));
+        Path secondPath = Files.createTempFile("stats2", ".csv");
+        Files.write(secondPath, "UNIQUE_KEY,PRODUCT_TITLE\nKEY2,Two v2\nKEY3,Three\n".getBytes());
+        csvProcessingService.processCsvFile(secondFile.getId(), secondPath.toString()).get();
+
+        SystemStatsService.SystemStats incremental = systemStatsService.current();
+        assertEquals(3, incremental.uniqueProducts());
+        assertEquals(1L, incremental.productsPerFile().get("first.csv (ID:" + firstFile.getId() + ")"));
+        assertEquals(2L, incremental.productsPerFile().get("second.csv (ID:" + secondFile.getId() + ")"));
+
+        systemStatsService.invalidate();
+        SystemStatsService.SystemStats rebuilt = systemStatsService.current();
+        assertEquals(incremental.productsPerFile(), rebuilt.productsPerFile());
+        assertEquals(incremental.uniqueProducts(), rebuilt.uniqueProducts());
+    }
+
+    @Test
+    public void testStatsCountKeysRepeatedWithinAChunkOnce() throws Exception {
+        UploadedFile firstFile = uploadedFileRepository.save(new UploadedFile("first.csv", "hash-repeat-1"));
+        Path firstPath = Files.createTempFile("repeat1", ".csv");
+        Files.write(firstPath, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\n".getBytes());
+        csvProcessingService.processCsvFile(firstFile.getId(), firstPath.toString()).get();
+        systemStatsService.current();
+
+        // KEY3 is inserted and KEY1 updated within their chunks, each from two different rows
+        UploadedFile secondFile = uploadedFileRepository.save(new UploadedFile("second.csv", "hash-repeat-2"));
+        Path secondPath = Files.createTempFile("repeat2", ".csv");
+        Files.write(secondPath, ("UNIQUE_KEY,PRODUCT_TITLE\nKEY3,Three\nKEY3,Three v2\n"
+                + "KEY1,One v2\nKEY1,One v3\n").getBytes());
+        csvProcessingService.processCsvFile(secondFile.getId(), secondPath.toString()).get();
+
+        Map<String, Long> stored = new HashMap<>();
+        for (Object[] row : productRepository.countProductsPerFile()) {
+            stored.put(row[1] + " (ID:" + row[0] + ")", (Long) row[2]);
+        }
+        SystemStatsService.SystemStats incremental = systemStatsService.current();
+        assertEquals(stored, incremental.productsPerFile());
+        assertEquals(2L, incremental.productsPerFile().get("second.csv (ID:" + secondFile.getId() + ")"));
+        assertEquals(3, incremental.uniqueProducts());
+    }
+
+    @Test
+    public void testKeyIndexFollowsImportsAndRetries() throws Exception {
+        assertTrue(productKeyIndex.isLoaded());
+        UploadedFile firstFile = uploadedFileRepository.save(new UploadedFile("first.csv", "hash-index-1"));
+        Path firstPath = Files.createTempFile("index1", ".csv");
+        Files.write(firstPath, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\nKEY3,Three\n".getBytes());
+        csvProcessingService.processCsvFile(firstFile.getId(), firstPath.toString()).get();
+
+        // Loaded from the database rather than followed from the import
+        productKeyIndex.build();
+        UploadedFile secondFile = uploadedFileRepository.save(new UploadedFile("second.csv", "hash-index-2"));
+        Path secondPath = Files.createTempFile("index2", ".csv");
+        Files.write(secondPath, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two v2\nKEY4,Four\n".getBytes());
+        csvProcessingService.processCsvFile(secondFile.getId(), secondPath.toString()).get();
+
+        UploadedFile second = uploadedFileRepository.findById(secondFile.getId()).orElseThrow();
+        assertEquals(1, second.getInsertedRows());
+        assertEquals(1, second.getUpdatedRows());
+        assertEquals(1, second.getUnchangedRows());
+
+        // A retry from the start deletes the upload's rows first, so they are new again
+        second.setStatus("failed");
+        second.setCheckpointRecord(0);
+        uploadedFileRepository.save(second);
+        Files.write(secondPath, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two v2\nKEY4,Four\n".getBytes());
+        csvProcessingService.processCsvFile(secondFile.getId(), secondPath.toString()).get();
+
+        UploadedFile retried = uploadedFileRepository.findById(secondFile.getId()).orElseThrow();
+        assertEquals(2, retried.getInsertedRows());
+        assertEquals(0, retried.getUpdatedRows());
+        assertEquals(1, retried.getUnchangedRows());
+        assertEquals(4, productRepository.count());
+        assertTrue(productRepository.findByUniqueKeyAndUploadedFileId("KEY2", secondFile.getId()).isPresent());
+    }
+
+    @Test
+    public void testPreviewCountsWhatTheImportWouldDo() throws Exception {
+        UploadedFile firstFile = uploadedFileRepository.save(new UploadedFile("first.csv", "hash-preview-1"));
+        Path firstPath = Files.createTempFile("preview1", ".csv");
+        Files.write(firstPath, ("UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,One,10.00\nKEY2,Two,20.00\nKEY3,Three,30.00\nKEY4,Four,\n").getBytes());
+        csvProcessingService.processCsvFile(firstFile.getId(), firstPath.toString()).get();
+
+        // KEY2 comes back in a later batch, after the file itself changed it
+        String csv = "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,One,10.00\nKEY2,Two,25.00\n" +
+                "KEY3,Three,abc\nKEY5,Five,5.00\n" +
+                ",Nameless,1.00\nKEY2,Two,19.50\n" +
+                "KEY4,Four,4.00\n";
+        Path previewPath = Files.createTempFile("preview2", ".csv");
+        Files.write(previewPath, csv.getBytes());
+        UploadPreview preview = csvProcessingService.preview(previewPath.toString(), "second.csv",
+                RecordReader.COMMONS_CSV).get();
+
+        assertEquals(7, preview.records());
+        assertEquals(1, preview.inserted());
+        assertEquals(4, preview.updated());
+        assertEquals(1, preview.unchanged());
+        assertEquals(1, preview.skipped());
+        assertEquals(1, preview.invalidPriceRows());
+        assertEquals(new UploadPreview.InvalidPrice(3, "KEY3", "abc"), preview.invalidPrices().get(0));
+        // KEY2 changes twice, KEY3 loses its price and KEY4 gains one
+        assertEquals(4, preview.priceChanges());
+        assertEquals(List.of(
+                new UploadPreview.PriceChange("KEY2", new BigDecimal("25.00"), new BigDecimal("19.50"),
+                        new BigDecimal("-5.50")),
+                new UploadPreview.PriceChange("KEY2", new BigDecimal("20.00"), new BigDecimal("25.00"),
+                        new BigDecimal("5.00"))), preview.topPriceChanges());
+        assertEquals(4, productRepository.count());
+        assertEquals(new BigDecimal("20.00"), productRepository.findByUniqueKey("KEY2").orElseThrow().getPiecePrice());
+
+        // The import then counts the same
+        UploadedFile secondFile = uploadedFileRepository.save(new UploadedFile("second.csv", "hash-preview-2"));
+        csvProcessingService.processCsvFile(secondFile.getId(), previewPath.toString()).get();
+        UploadedFile second = uploadedFileRepository.findById(secondFile.getId()).orElseThrow();
+        assertEquals(preview.inserted(), second.getInsertedRows());
+        assertEquals(preview.updated(), second.getUpdatedRows());
+        assertEquals(preview.unchanged(), second.getUnchangedRows());
+        assertEquals(preview.skipped(), second.getSkippedRows());
+    }
+}
@@ -0,0 +1,70 @@
+package com.csvuploader.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileSnifferTest {
+
+    @Test
+    public void testDetectsDelimiter() {
+        assertEquals(',', delimiter("UNIQUE_KEY,PRODUCT_TITLE\nA,One\nB,Two\n"));
+        assertEquals('\t', delimiter("UNIQUE_KEY\tPRODUCT_TITLE\tPIECE_PRICE\nA\tOne, two\t1\n"));
+        assertEquals(';', delimiter("UNIQUE_KEY;PRODUCT_TITLE;PIECE_PRICE\nA;One;1,50\nB;Two;2,00\n"));
+        assertEquals('|', delimiter("UNIQUE_KEY|PRODUCT_TITLE\nA|One\n"));
+        // A comma inside a quoted value does not count
+        assertEquals(';', delimiter("UNIQUE_KEY;PRODUCT_TITLE\nA;\"One, two, three\"\nB;Two\n"));
+        assertEquals(',', delimiter(""));
+    }
+
+    @Test
+    public void testInchMarksDoNotOpenQuotes() {
+        String csv = "UNIQUE_KEY\tPRODUCT_DESCRIPTION\n" +
+                "A\t12\" ruler, steel\n" +
+                "B\t6\" ruler\n" +
+                "C\tPlain\n";
+        assertEquals('\t', delimiter(csv));
+    }
+
+    @Test
+    public void testIgnoresLineCutOffBySample() {
+        String csv = "UNIQUE_KEY,PRODUCT_TITLE\nA,One\nB;x;y;z";
+        assertEquals(',', FileSniffer.detectDelimiter(csv.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, false));
+    }
+
+    @Test
+    public void testDetectsCharset() {
+        String text = "UNIQUE_KEY,PRODUCT_TITLE\nA,Café\n";
+        assertEquals(StandardCharsets.UTF_8, FileSniffer.detectCharset(text.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(StandardCharsets.UTF_8, FileSniffer.detectCharset(("﻿" + text).getBytes(StandardCharsets.UTF_8)));
+        assertEquals(StandardCharsets.UTF_16LE, FileSniffer.detectCharset(("﻿" + text).getBytes(StandardCharsets.UTF_16LE)));
+        assertEquals(StandardCharsets.UTF_16BE, FileSniffer.detectCharset(("﻿" + text).getBytes(StandardCharsets.UTF_16BE)));
+        assertEquals(StandardCharsets.UTF_16LE, FileSniffer.detectCharset(text.getBytes(StandardCharsets.UTF_16LE)));
+
+        Charset windows1252 = Charset.forName("windows-1252");
+        assertEquals(windows1252, FileSniffer.detectCharset(text.getBytes(windows1252)));
+
+        // A multi-byte sequence cut off at the end of the sample is still UTF-8
+        byte[] utf8 = "A,Café".getBytes(StandardCharsets.UTF_8);
+        byte[] cut = Arrays.copyOf(utf8, utf8.length - 1);
+        assertEquals(StandardCharsets.UTF_8, FileSniffer.detectCharset(cut));
+    }
+
+    @Test
+    public void testHeaderAliases() {
+        ColumnMapping columns = ColumnMapping.fromHeaders(
+                List.of("﻿unique key", "Product-Title", "Style No", "Color", "Price", "COLOR_NAME"));
+        assertEquals("UNIQUE_KEY=0,PRODUCT_TITLE=1,PRODUCT_DESCRIPTION=-1,STYLE#=2,SANMAR_MAINFRAME_COLOR=-1," +
+                "SIZE=-1,COLOR_NAME=5,PIECE_PRICE=4", columns.describe());
+    }
+
+    private char delimiter(String text) {
+        byte[] sample = text.getBytes(StandardCharsets.UTF_8);
+        return FileSniffer.detectDelimiter(sample, StandardCharsets.UTF_8, true);
+    }
+}
@@ -0,0 +1,113 @@
+package com.csvuploader.service;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileStorageServiceTest {
+
+    static final byte[] CSV = "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\nKEY3,Three".getBytes(StandardCharsets.UTF_8);
+
+    private final FileStorageService fileStorageService = new FileStorageService();
+
+    private final List<String> stored = new ArrayList<>();
+
+    @AfterEach
+    public void deleteStoredFiles() {
+        stored.forEach(fileStorageService::deleteFile);
+    }
+
+    @Test
+    public void testStoresFileWithMd5AndRowEstimate() throws Exception {
+        FileStorageService.StoredFile storedFile = store("catalog.csv", CSV);
+
+        assertArrayEquals(CSV, Files.readAllBytes(Path.of(storedFile.path())));
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(CSV)), storedFile.checksum());
+
+        // Lines after the header, with or without a final newline
+        assertEquals(3, storedFile.estimatedRows());
+        assertEquals(3, store("newline.csv", "UNIQUE_KEY\r\nKEY1\r\nKEY2\r\nKEY3\r\n".getBytes()).estimatedRows());
+        assertEquals(0, store("header.csv", "UNIQUE_KEY\n".getBytes()).estimatedRows());
+        assertEquals(0, store("empty.csv", new byte[0]).estimatedRows());
+    }
+
+    @Test
+    public void testChecksumCoversDecompressedContent() throws IOException {
+        FileStorageService.StoredFile plain = store("catalog.csv", CSV);
+        assertEquals(3, plain.estimatedRows());
+
+        for (FileStorageService.StoredFile compressed : List.of(
+                store("catalog.csv.gz", gzip(CSV)),
+                store("catalog.zip", zip(CSV)),
+                store("catalog.csv.zst", zstd(CSV)))) {
+            assertEquals(plain.checksum(), compressed.checksum());
+            assertEquals(3, compressed.estimatedRows());
+        }
+    }
+
+    @Test
+    public void testCompressedFilesAreStoredAsSent() throws IOException {
+        byte[] gzipped = gzip(CSV);
+        FileStorageService.StoredFile storedFile = store("catalog.csv.gz", gzipped);
+
+        Path path = Path.of(storedFile.path());
+        assertArrayEquals(gzipped, Files.readAllBytes(path));
+        assertEquals(Compression.GZIP, Compression.detect(path));
+        try (var in = Compression.decompress(Files.newInputStream(path))) {
+            assertArrayEquals(CSV, in.readAllBytes());
+        }
+    }
+
+    private FileStorageService.StoredFile store(String name, byte[] content) throws IOException {
+        FileStorageService.StoredFile storedFile =
+                fileStorageService.storeFile(new MockMultipartFile("file", name, null, content));
+        stored.add(storedFile.path());
+        return storedFile;
+    }
+
+    static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    // A folder and a macOS resource fork ahead of the file itself
+    static byte[] zip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("export/"));
+            zip.putNextEntry(new ZipEntry("__MACOSX/._catalog.csv"));
+            zip.write(new byte[]{0, 5, 22, 7});
+            zip.putNextEntry(new ZipEntry("export/catalog.csv"));
+            zip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] zstd(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream zstd = new ZstdOutputStream(out)) {
+            zstd.write(content);
+        }
+        return out.toByteArray();
+    }
+}
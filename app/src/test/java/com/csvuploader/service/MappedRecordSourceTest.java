@@ -0,0 +1,112 @@
+package com.csvuploader.service;
+
+import com.csvuploader.service.ColumnMapping.Column;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedRecordSourceTest {
+
+    private static final FileProfile CSV = new FileProfile(',', StandardCharsets.UTF_8);
+
+    private static final FileProfile TSV = new FileProfile('\t', StandardCharsets.UTF_8);
+
+    private Path file;
+
+    @AfterEach
+    public void deleteFile() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMatchesCommonsCsv() throws IOException {
+        write("\uFEFFUNIQUE_KEY,PRODUCT_TITLE,PRODUCT_DESCRIPTION,PIECE_PRICE,EXTRA\r\n" +
+                "KEY1,Core\u00AE Tee , 12\" ruler,$10.00,x\r\n" +
+                "\r\n" +
+                "KEY2,\"Hat, wool\",\"Says \"\"hi\"\"\nand bye\",5.00\n" +
+                "KEY3,\u2122,  ,,\n" +
+                "   \n" +
+                "KEY4,\"quoted\" ,tail,1\n" +
+                "KEY5,Last,no newline");
+
+        List<List<String>> mapped = readAll(MappedRecordSource.open(file, CSV, 0, null), 2);
+        List<List<String>> commons = readAll(CommonsCsvRecordSource.open(file, CSV, 0, null), 2);
+
+        assertEquals(commons, mapped);
+        assertEquals(6, mapped.size());
+        assertEquals(List.of("KEY1", "Core Tee", "12\" ruler", "$10.00"), mapped.get(0).subList(0, 4));
+        assertEquals(List.of("KEY2", "Hat, wool", "Says \"hi\"\nand bye", "5.00"), mapped.get(1).subList(0, 4));
+    }
+
+    @Test
+    public void testTabDelimitedAndPositions() throws IOException {
+        write("UNIQUE_KEY\tPRODUCT_TITLE\nA\tOne\nB\tTwo\nC\tThree\n");
+
+        MappedRecordSource source = MappedRecordSource.open(file, TSV, 0, null);
+        RecordSource.Batch first = source.nextBatch(2);
+        assertEquals(2, first.size());
+        assertEquals(37L, first.nextPosition());
+        RecordSource.Batch last = source.nextBatch(2);
+        assertEquals(1, last.size());
+        assertNull(last.nextPosition());
+        assertNull(source.nextBatch(2));
+
+        // Resume from the stored byte offset, or by count without one
+        assertEquals(List.of(List.of("C", "Three")), readTwo(MappedRecordSource.open(file, TSV, 2, 37L)));
+        assertEquals(List.of(List.of("C", "Three")), readTwo(MappedRecordSource.open(file, TSV, 2, null)));
+    }
+
+    @Test
+    public void testBareCarriageReturnsFallBack() throws IOException {
+        write("UNIQUE_KEY,PRODUCT_TITLE\rA,One\rB,Two\r");
+        assertNull(MappedRecordSource.open(file, CSV, 0, null));
+    }
+
+    private void write(String content) throws IOException {
+        file = Files.createTempFile("mapped", ".csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Cleaned values of every imported column, the way the import reads them
+    private List<List<String>> readAll(RecordSource source, int batchSize) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (source) {
+            ColumnMapping columns = ColumnMapping.fromHeaders(source.headers());
+            RecordSource.Batch batch;
+            while ((batch = source.nextBatch(batchSize)) != null) {
+                for (SourceRecord record : batch) {
+                    List<String> row = new ArrayList<>();
+                    for (Column column : List.of(Column.UNIQUE_KEY, Column.PRODUCT_TITLE,
+                            Column.PRODUCT_DESCRIPTION, Column.PIECE_PRICE)) {
+                        row.add(columns.get(record, column));
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private List<List<String>> readTwo(RecordSource source) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (source) {
+            RecordSource.Batch batch;
+            while ((batch = source.nextBatch(10)) != null) {
+                for (SourceRecord record : batch) {
+                    rows.add(List.of(record.get(0), record.get(1)));
+                }
+            }
+        }
+        return rows;
+    }
+}
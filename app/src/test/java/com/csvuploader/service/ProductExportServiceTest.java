@@ -0,0 +1,66 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:csvuploader-export-test",
+        "csv.import.batch-size=2"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ProductExportServiceTest {
+
+    @Autowired
+    private ProductExportService productExportService;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Test
+    public void testExportsTheMergedCatalog() throws Exception {
+        UploadedFile first = importCsv("first.csv", "UNIQUE_KEY,PRODUCT_TITLE,STYLE#,PIECE_PRICE\n" +
+                "KEY1,One,S1,10.00\nKEY2,\"Two, quoted\",S2,20.00\n");
+        UploadedFile second = importCsv("second.csv", "UNIQUE_KEY,PRODUCT_TITLE,STYLE#,PIECE_PRICE\n" +
+                "KEY1,One v2,S1,11.00\nKEY3,Three,S1,30.00\n");
+
+        StringWriter csv = new StringWriter();
+        assertEquals(3, productExportService.export(ExportFormat.CSV, null, null, csv));
+        assertEquals("UNIQUE_KEY,PRODUCT_TITLE,PRODUCT_DESCRIPTION,STYLE#,SANMAR_MAINFRAME_COLOR,SIZE,COLOR_NAME," +
+                "PIECE_PRICE\r\n" +
+                "KEY1,One v2,,S1,,,,11.00\r\n" +
+                "KEY2,\"Two, quoted\",,S2,,,,20.00\r\n" +
+                "KEY3,Three,,S1,,,,30.00\r\n", csv.toString());
+
+        StringWriter ndjson = new StringWriter();
+        assertEquals(2, productExportService.export(ExportFormat.NDJSON, "S1", null, ndjson));
+        String[] lines = ndjson.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"uniqueKey\":\"KEY1\""));
+        assertTrue(lines[1].contains("\"piecePrice\":30.00"));
+
+        assertEquals(1, productExportService.export(ExportFormat.CSV, null, first.getId(), new StringWriter()));
+        assertEquals(2, productExportService.export(ExportFormat.CSV, "S1", second.getId(), new StringWriter()));
+        assertEquals(0, productExportService.export(ExportFormat.CSV, "S2", second.getId(), new StringWriter()));
+    }
+
+    private UploadedFile importCsv(String name, String csv) throws Exception {
+        UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile(name, "hash-" + name));
+        Path path = Files.createTempFile("export", ".csv");
+        Files.write(path, csv.getBytes());
+        csvProcessingService.processCsvFile(uploadedFile.getId(), path.toString()).get();
+        return uploadedFile;
+    }
+}
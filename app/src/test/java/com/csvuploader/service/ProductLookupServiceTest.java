@@ -0,0 +1,76 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.ProductView;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:csvuploader-lookup-test",
+        "csv.import.batch-size=2",
+        "csv.products.lookup.max-keys=10"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ProductLookupServiceTest {
+
+    @Autowired
+    private ProductLookupService productLookupService;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testImportsInvalidateTheKeysTheyWrite() throws Exception {
+        UploadedFile first = importCsv("first.csv", "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,One,10.00\nKEY2,Two,20.00\n");
+
+        Map<String, ProductView> products = productLookupService.findAll(List.of("KEY2", "KEY3", "KEY1"));
+        assertEquals(List.of("KEY2", "KEY1"), List.copyOf(products.keySet()));
+        assertEquals(new BigDecimal("10.00"), products.get("KEY1").piecePrice());
+        assertEquals(first.getId(), products.get("KEY1").uploadedFileId());
+
+        // Served from the cache, the missing key included
+        productLookupService.findAll(List.of("KEY1", "KEY2", "KEY3"));
+        assertEquals(3.0, meterRegistry.get("cache.gets").tag("cache", ProductLookupService.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+
+        UploadedFile second = importCsv("second.csv", "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,One,12.50\nKEY2,Two,20.00\nKEY3,Three,30.00\n");
+
+        products = productLookupService.findAll(List.of("KEY1", "KEY2", "KEY3"));
+        assertEquals(new BigDecimal("12.50"), products.get("KEY1").piecePrice());
+        assertEquals(second.getId(), products.get("KEY1").uploadedFileId());
+        // Unchanged, so still the first upload's row
+        assertEquals(first.getId(), products.get("KEY2").uploadedFileId());
+        assertEquals("Three", products.get("KEY3").productTitle());
+
+        assertThrows(IllegalArgumentException.class, () -> productLookupService.findAll(
+                List.of("A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K")));
+    }
+
+    private UploadedFile importCsv(String name, String csv) throws Exception {
+        UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile(name, "hash-" + name));
+        Path path = Files.createTempFile("lookup", ".csv");
+        Files.write(path, csv.getBytes());
+        csvProcessingService.processCsvFile(uploadedFile.getId(), path.toString()).get();
+        return uploadedFile;
+    }
+}
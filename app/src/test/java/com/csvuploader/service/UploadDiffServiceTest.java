@@ -0,0 +1,59 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:csvuploader-diff-test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UploadDiffServiceTest {
+
+    @Autowired
+    private UploadDiffService uploadDiffService;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Test
+    public void testDiffReportsAddedRemovedAndChangedFields() throws Exception {
+        Long lastWeek = importCsv("last-week.csv", "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY1,Shirt,10.00\n" +
+                "KEY2,Hat,5.00\n" +
+                "KEY3,Mug,3.00\n");
+        Long thisWeek = importCsv("this-week.csv", "UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\n" +
+                "KEY4,Bag,8.00\n" +
+                "KEY1,Shirt,12.00\n" +
+                "KEY3,Mug,3.00\n" +
+                "KEY1,Polo,12.00\n"); // repeated key: the last row is the one imported
+
+        StringWriter out = new StringWriter();
+        UploadDiffService.DiffSummary summary = uploadDiffService.writeDiff(lastWeek, thisWeek, out);
+
+        assertEquals(new UploadDiffService.DiffSummary(1, 1, 1, 1), summary);
+        assertEquals("change,UNIQUE_KEY,field,old_value,new_value\r\n" +
+                "changed,KEY1,PRODUCT_TITLE,Shirt,Polo\r\n" +
+                "changed,KEY1,PIECE_PRICE,10.00,12.00\r\n" +
+                "removed,KEY2,,,\r\n" +
+                "added,KEY4,,,\r\n", out.toString());
+    }
+
+    private Long importCsv(String fileName, String csv) throws Exception {
+        UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile(fileName, "hash-" + fileName));
+        Path tempFile = Files.createTempFile("diff", ".csv");
+        Files.write(tempFile, csv.getBytes());
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+        return uploadedFile.getId();
+    }
+}
@@ -0,0 +1,56 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadPage;
+import com.csvuploader.model.UploadSummary;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:csvuploader-history-test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UploadHistoryServiceTest {
+
+    @Autowired
+    private UploadHistoryService uploadHistoryService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Test
+    public void testKeysetPagesWalkWholeHistory() {
+        // Two uploads share a timestamp so the id has to break the tie
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (int i = 0; i < 5; i++) {
+            UploadedFile uploadedFile = new UploadedFile("file" + i + ".csv", "hash-history-" + i);
+            uploadedFile.setCreatedAt(base.plusMinutes(Math.min(i, 3)));
+            uploadedFileRepository.save(uploadedFile);
+        }
+
+        List<String> names = new ArrayList<>();
+        UploadPage page = uploadHistoryService.page(null, 2);
+        int pages = 1;
+        names.addAll(page.uploads().stream().map(UploadSummary::fileName).toList());
+        while (page.nextCursor() != null) {
+            page = uploadHistoryService.page(page.nextCursor(), 2);
+            pages++;
+            names.addAll(page.uploads().stream().map(UploadSummary::fileName).toList());
+        }
+
+        assertEquals(3, pages);
+        assertEquals(List.of("file4.csv", "file3.csv", "file2.csv", "file1.csv", "file0.csv"), names);
+    }
+
+    @Test
+    public void testInvalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> uploadHistoryService.page("not-a-cursor", 10));
+    }
+}
@@ -0,0 +1,99 @@
+package com.csvuploader.service;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.UploadedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:csvuploader-validation-test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ValidationServiceTest {
+
+    @Autowired
+    private ValidationService validationService;
+
+    @Autowired
+    private CSVProcessingService csvProcessingService;
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Test
+    public void testMissingKeysArePagedInInputOrder() throws Exception {
+        UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile("catalog.csv", "hash-validate"));
+        Path tempFile = Files.createTempFile("validate", ".csv");
+        Files.write(tempFile, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\n".getBytes());
+        csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+
+        // Header line, a duplicate and a blank line are not keys
+        String expected = "UNIQUE_KEY\nKEY1\nMISSING3\nKEY2\n\nMISSING1\nMISSING2\nMISSING1\n";
+
+        Map<String, Object> firstPage = validationService.validateUpload(
+                uploadedFile.getId(), new StringReader(expected), 0, 2);
+        assertEquals(2L, firstPage.get("totalUploaded"));
+        assertEquals(5, firstPage.get("expectedKeys"));
+        assertEquals(2, firstPage.get("foundKeys"));
+        assertEquals(3, firstPage.get("missingKeyCount"));
+        assertEquals(2, firstPage.get("totalPages"));
+        assertEquals(List.of("MISSING3", "MISSING1"), firstPage.get("missingKeys"));
+
+        Map<String, Object> secondPage = validationService.validateUpload(
+                uploadedFile.getId(), new StringReader(expected), 1, 2);
+        assertEquals(List.of("MISSING2"), secondPage.get("missingKeys"));
+    }
+
+    @Test
+    public void testKeysOfOtherUploadsAreMissing() throws Exception {
+        UploadedFile older = uploadedFileRepository.save(new UploadedFile("older.csv", "hash-older"));
+        Path olderFile = Files.createTempFile("older", ".csv");
+        Files.write(olderFile, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nOLD1,Old\n".getBytes());
+        csvProcessingService.processCsvFile(older.getId(), olderFile.toString()).get();
+
+        // KEY1 is re-sent unchanged, so its row stays with the older upload
+        UploadedFile resent = uploadedFileRepository.save(new UploadedFile("resent.csv", "hash-resent"));
+        Path resentFile = Files.createTempFile("resent", ".csv");
+        Files.write(resentFile, "UNIQUE_KEY,PRODUCT_TITLE\nKEY1,One\nKEY2,Two\n".getBytes());
+        csvProcessingService.processCsvFile(resent.getId(), resentFile.toString()).get();
+
+        Map<String, Object> result = validationService.validateUpload(
+                resent.getId(), List.of("KEY1", "KEY2", "OLD1"), 0, 10);
+        assertEquals(2L, result.get("totalUploaded"));
+        assertEquals(2, result.get("foundKeys"));
+        assertEquals(List.of("OLD1"), result.get("missingKeys"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompareReadsVersionHistory() throws Exception {
+        String[] prices = {"10.00", "12.00", "12.00"};
+        Long lastFileId = null;
+        for (int i = 0; i < prices.length; i++) {
+            UploadedFile uploadedFile = uploadedFileRepository.save(new UploadedFile("v" + i + ".csv", "hash-version-" + i));
+            Path tempFile = Files.createTempFile("version", ".csv");
+            Files.write(tempFile, ("UNIQUE_KEY,PRODUCT_TITLE,PIECE_PRICE\nKEY1,Shirt," + prices[i] + "\n").getBytes());
+            csvProcessingService.processCsvFile(uploadedFile.getId(), tempFile.toString()).get();
+            lastFileId = uploadedFile.getId();
+        }
+
+        // The last upload repeated the price, so it is a version without a change
+        Map<String, Object> comparison = validationService.compareRecords("KEY1", 100);
+        assertEquals(false, comparison.get("changed"));
+        assertEquals(lastFileId, ((Map<String, Object>) comparison.get("latest")).get("fileId"));
+        assertEquals(3, ((List<?>) comparison.get("allVersions")).size());
+        assertEquals(3L, comparison.get("totalVersions"));
+
+        Map<String, Object> limited = validationService.compareRecords("KEY1", 1);
+        assertEquals(1, ((List<?>) limited.get("allVersions")).size());
+        assertEquals(3L, limited.get("totalVersions"));
+    }
+}
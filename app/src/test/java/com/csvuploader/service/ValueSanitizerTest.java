@@ -0,0 +1,35 @@
+package com.csvuploader.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValueSanitizerTest {
+
+    @Test
+    public void testCleanAsciiIsReturnedAsIs() {
+        String value = "Port & Company Core Cotton Tee";
+        assertSame(value, ValueSanitizer.clean(value));
+        assertNull(ValueSanitizer.clean(null));
+    }
+
+    @Test
+    public void testNonAsciiIsDroppedAndTrimmed() {
+        assertEquals("Core Tee", ValueSanitizer.clean("Core\u00AE Tee"));
+        assertEquals("KEY1", ValueSanitizer.clean("\uFEFF KEY1  "));
+        assertEquals("Caf", ValueSanitizer.clean("Caf\u00E9"));
+        assertEquals("", ValueSanitizer.clean("\u2122"));
+        assertEquals("", ValueSanitizer.clean("   "));
+    }
+
+    @Test
+    public void testHeaderAliasesResolveOnce() {
+        ColumnMapping columns = ColumnMapping.fromHeaders(List.of("\uFEFFUNIQUE_KEY", "product_title", "?STYLE#"));
+        assertTrue(columns.has(ColumnMapping.Column.UNIQUE_KEY));
+        assertTrue(columns.has(ColumnMapping.Column.PRODUCT_TITLE));
+        assertTrue(columns.has(ColumnMapping.Column.STYLE_NUMBER));
+        assertFalse(columns.has(ColumnMapping.Column.PIECE_PRICE));
+    }
+}
@@ -0,0 +1,68 @@
+package com.csvuploader.benchmarks;
+
+import com.csvuploader.service.FileProfile;
+import org.apache.commons.csv.CSVFormat;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A generated catalog file shared by the file based benchmarks. Sizes and
+ * ratios can be overridden on the command line, e.g. -p rows=1000000.
+ */
+@State(Scope.Benchmark)
+public class CatalogFile {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"tsv", "csv"})
+    public String format;
+
+    @Param({"0.05"})
+    public double duplicateRatio;
+
+    @Param({"0.01"})
+    public double nonAsciiRatio;
+
+    public Path path;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        path = SyntheticCatalog.writeFile(Files.createTempFile("catalog", "." + format), rows, delimiter(),
+                duplicateRatio, nonAsciiRatio, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    public char delimiter() {
+        return "tsv".equals(format) ? '\t' : ',';
+    }
+
+    // SyntheticCatalog writes UTF-8
+    public FileProfile profile() {
+        return new FileProfile(delimiter(), StandardCharsets.UTF_8);
+    }
+
+    // Same settings CSVProcessingService parses uploads with
+    public CSVFormat csvFormat() {
+        return CSVFormat.DEFAULT.builder()
+                .setDelimiter(delimiter())
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreHeaderCase(true)
+                .setTrim(true)
+                .build();
+    }
+}
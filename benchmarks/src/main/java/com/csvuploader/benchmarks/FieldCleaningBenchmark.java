@@ -0,0 +1,76 @@
+package com.csvuploader.benchmarks;
+
+import com.csvuploader.service.ValueSanitizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-value cost of cleaning CSV fields: the old byte round trip plus regex
+ * against ValueSanitizer. Run with -prof gc to compare gc.alloc.rate.norm,
+ * the bytes allocated per operation (one operation cleans a full row).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldCleaningBenchmark {
+
+    private static final int ROWS = 1024;
+
+    // Share of values carrying a non-ASCII character
+    @Param({"0.0", "0.05", "0.5"})
+    public double nonAsciiRatio;
+
+    private String[][] rows;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rows = SyntheticCatalog.fieldValues(ROWS, nonAsciiRatio, new Random(42));
+    }
+
+    @Benchmark
+    public void legacyCleanUtf8(Blackhole blackhole) {
+        for (String value : nextRow()) {
+            blackhole.consume(legacyCleanUtf8(value));
+        }
+    }
+
+    @Benchmark
+    public void valueSanitizer(Blackhole blackhole) {
+        for (String value : nextRow()) {
+            blackhole.consume(ValueSanitizer.clean(value));
+        }
+    }
+
+    private String[] nextRow() {
+        next = (next + 1) & (ROWS - 1);
+        return rows[next];
+    }
+
+    // Copy of CSVProcessingService.cleanUtf8 before ValueSanitizer replaced it
+    private static String legacyCleanUtf8(String text) {
+        if (text == null)
+            return null;
+        return new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)
+                .replaceAll("[^\\x00-\\x7F]", "")
+                .trim();
+    }
+}
@@ -0,0 +1,142 @@
+package com.csvuploader.benchmarks;
+
+import com.csvuploader.CsvUploaderApplication;
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.repository.ProductKeyIndex;
+import com.csvuploader.repository.UploadedFileRepository;
+import com.csvuploader.service.CSVProcessingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end import through CSVProcessingService into an embedded in-memory
+ * H2, or with -p database=postgres into the PostgreSQL database at
+ * BENCHMARK_POSTGRES_URL (user postgres, no password; its tables are
+ * recreated). "insert" starts every import from an empty products table,
+ * "update" alternates between two files with the same keys and different
+ * prices so every row is a real update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"insert", "update"})
+    public String scenario;
+
+    @Param({"h2"})
+    public String database;
+
+    @Param({"commons-csv", "mapped"})
+    public String reader;
+
+    private ConfigurableApplicationContext context;
+
+    private CSVProcessingService csvProcessingService;
+
+    private UploadedFileRepository uploadedFileRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductKeyIndex productKeyIndex;
+
+    private Path[] sources;
+
+    private Path workFile;
+
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(CsvUploaderApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN");
+        if ("postgres".equals(database)) {
+            // Arguments, since the profile's own properties outrank builder defaults
+            context = builder.profiles("postgres").run(
+                    "--spring.datasource.url=" + System.getenv("BENCHMARK_POSTGRES_URL"),
+                    "--spring.datasource.username=postgres",
+                    "--spring.datasource.password=",
+                    "--spring.jpa.hibernate.ddl-auto=create-drop");
+        } else {
+            context = builder.run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        }
+        csvProcessingService = context.getBean(CSVProcessingService.class);
+        uploadedFileRepository = context.getBean(UploadedFileRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        productKeyIndex = context.getBean(ProductKeyIndex.class);
+
+        // Same keys, different random prices
+        sources = new Path[]{
+                SyntheticCatalog.writeFile(Files.createTempFile("import-a", ".tsv"), rows, '\t', 0.0, 0.01, 1),
+                SyntheticCatalog.writeFile(Files.createTempFile("import-b", ".tsv"), rows, '\t', 0.0, 0.01, 2)
+        };
+        workFile = Files.createTempFile("import", ".tsv");
+
+        if ("update".equals(scenario)) {
+            prepare();
+            runImport();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() throws Exception {
+        // The import deletes its file once it completes
+        Files.copy(sources[invocation++ % 2], workFile, StandardCopyOption.REPLACE_EXISTING);
+        if ("insert".equals(scenario)) {
+            jdbcTemplate.execute("DELETE FROM product_versions");
+            jdbcTemplate.execute("DELETE FROM products");
+            // Deleted behind the key index's back
+            productKeyIndex.build();
+        }
+    }
+
+    @Benchmark
+    public void importFile(RowCounter counter) throws Exception {
+        runImport();
+        counter.rows += rows;
+    }
+
+    private void runImport() throws Exception {
+        UploadedFile uploadedFile = new UploadedFile("benchmark.tsv", UUID.randomUUID().toString());
+        uploadedFile.setRecordReader(reader);
+        uploadedFile = uploadedFileRepository.save(uploadedFile);
+        csvProcessingService.processCsvFile(uploadedFile.getId(), workFile.toString()).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        context.close();
+        for (Path source : sources) {
+            Files.deleteIfExists(source);
+        }
+        Files.deleteIfExists(workFile);
+    }
+}
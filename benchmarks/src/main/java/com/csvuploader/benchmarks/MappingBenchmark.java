@@ -0,0 +1,83 @@
+package com.csvuploader.benchmarks;
+
+import com.csvuploader.model.UploadedFile;
+import com.csvuploader.service.ColumnMapping;
+import com.csvuploader.service.ProductMapper;
+import com.csvuploader.service.SourceRecord;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping already parsed records to products (cleaning, price parsing and
+ * row hashing), the transform stage of an import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"0.01", "0.2"})
+    public double nonAsciiRatio;
+
+    private List<SourceRecord> records;
+
+    private ColumnMapping columns;
+
+    private final UploadedFile uploadedFile = new UploadedFile("benchmark.csv", "benchmark");
+
+    @Setup(Level.Trial)
+    public void parse() throws IOException {
+        Path path = SyntheticCatalog.writeFile(Files.createTempFile("mapping", ".tsv"), rows, '\t', 0.0,
+                nonAsciiRatio, 42);
+        CatalogFile file = new CatalogFile();
+        file.format = "tsv";
+        try (Reader reader = new FileReader(path.toFile(), StandardCharsets.UTF_8);
+                CSVParser parser = new CSVParser(reader, file.csvFormat())) {
+            columns = ColumnMapping.fromHeaders(parser.getHeaderNames());
+            records = new ArrayList<>();
+            for (CSVRecord record : parser) {
+                records.add(index -> index < record.size() ? record.get(index) : null);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Benchmark
+    public void map(RowCounter counter, Blackhole blackhole) {
+        int recordNumber = 0;
+        for (SourceRecord record : records) {
+            blackhole.consume(ProductMapper.map(record, columns, uploadedFile, ++recordNumber));
+        }
+        counter.rows += records.size();
+    }
+}
@@ -0,0 +1,40 @@
+package com.csvuploader.benchmarks;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a whole catalog file with commons-csv, the reader stage of an import.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Benchmark
+    public void parse(CatalogFile file, RowCounter counter, Blackhole blackhole) throws IOException {
+        try (Reader reader = new FileReader(file.path.toFile(), StandardCharsets.UTF_8);
+                CSVParser parser = new CSVParser(reader, file.csvFormat())) {
+            for (CSVRecord record : parser) {
+                blackhole.consume(record);
+                counter.rows++;
+            }
+        }
+    }
+}
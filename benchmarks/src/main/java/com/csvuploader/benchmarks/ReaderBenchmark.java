@@ -0,0 +1,57 @@
+package com.csvuploader.benchmarks;
+
+import com.csvuploader.service.ColumnMapping;
+import com.csvuploader.service.ColumnMapping.Column;
+import com.csvuploader.service.CommonsCsvRecordSource;
+import com.csvuploader.service.MappedRecordSource;
+import com.csvuploader.service.RecordSource;
+import com.csvuploader.service.SourceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole catalog file through each RecordSource, reading the cleaned values
+ * of the imported columns: everything an import does before building
+ * products, on one thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"commons-csv", "mapped"})
+    public String reader;
+
+    @Benchmark
+    public void read(CatalogFile file, RowCounter counter, Blackhole blackhole) throws IOException {
+        try (RecordSource source = "mapped".equals(reader)
+                ? MappedRecordSource.open(file.path, file.profile(), 0, null)
+                : CommonsCsvRecordSource.open(file.path, file.profile(), 0, null)) {
+            ColumnMapping columns = ColumnMapping.fromHeaders(source.headers());
+            RecordSource.Batch batch;
+            while ((batch = source.nextBatch(1000)) != null) {
+                for (SourceRecord record : batch) {
+                    for (Column column : Column.values()) {
+                        blackhole.consume(columns.get(record, column));
+                    }
+                }
+                counter.rows += batch.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.csvuploader.benchmarks;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates SanMar-shaped catalog data for the benchmarks.
+ */
+public final class SyntheticCatalog {
+
+    public static final String[] HEADERS = {
+            "UNIQUE_KEY", "PRODUCT_TITLE", "PRODUCT_DESCRIPTION", "STYLE#",
+            "SANMAR_MAINFRAME_COLOR", "SIZE", "COLOR_NAME", "PIECE_PRICE"
+    };
+
+    private static final String[] COLORS = {"Black", "White", "Navy", "Athletic Heather", "True Royal", "Red"};
+    private static final String[] SIZES = {"XS", "S", "M", "L", "XL", "2XL", "3XL"};
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Field values of rows in HEADERS order. nonAsciiRatio is the share of
+     * values that carry a non-ASCII character such as a trademark sign.
+     */
+    public static String[][] fieldValues(int rows, double nonAsciiRatio, Random random) {
+        String[][] values = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            values[i] = row(i, random);
+            for (int j = 0; j < values[i].length; j++) {
+                if (random.nextDouble() < nonAsciiRatio) {
+                    values[i][j] = values[i][j] + "\u00AE";
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes a catalog file with a header and the given number of rows.
+     * duplicateRatio is the share of rows that repeat an earlier UNIQUE_KEY,
+     * nonAsciiRatio the share of values with a non-ASCII character.
+     */
+    public static Path writeFile(Path path, int rows, char delimiter, double duplicateRatio,
+            double nonAsciiRatio, long seed) throws IOException {
+        Random random = new Random(seed);
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setDelimiter(delimiter)
+                .setRecordSeparator('\n')
+                .build();
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+                CSVPrinter printer = new CSVPrinter(writer, format)) {
+            printer.printRecord((Object[]) HEADERS);
+            int distinctKeys = 0;
+            for (int i = 0; i < rows; i++) {
+                int key = distinctKeys > 0 && random.nextDouble() < duplicateRatio
+                        ? random.nextInt(distinctKeys)
+                        : distinctKeys++;
+                String[] values = row(key, random);
+                for (int j = 0; j < values.length; j++) {
+                    if (random.nextDouble() < nonAsciiRatio) {
+                        values[j] = values[j] + "\u00AE";
+                    }
+                }
+                printer.printRecord((Object[]) values);
+            }
+        }
+        return path;
+    }
+
+    static String[] row(int key, Random random) {
+        int style = key / 40;
+        String color = COLORS[key % COLORS.length];
+        String size = SIZES[key % SIZES.length];
+        return new String[]{
+                String.valueOf(100000 + key),
+                "Port & Company Core Cotton Tee PC" + style,
+                "A comfortable, durable 5.4-ounce, 100% cotton tee in " + color + ". Tag-free label.",
+                "PC" + style,
+                color.toUpperCase(),
+                size,
+                color,
+                String.format("%d.%02d", 3 + random.nextInt(40), random.nextInt(100))
+        };
+    }
+}
@@ -1,57 +0,0 @@
-package com.csvuploader.service;
-
-import org.apache.commons.io.FilenameUtils;
-import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-
-@Service
-public class FileStorageService {
-    
-    private final Path fileStorageLocation;
-    
-    public FileStorageService() {
-        this.fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
-        try {
-            Files.createDirectories(this.fileStorageLocation);
-        } catch (Exception ex) {
-            throw new RuntimeException("Could not create upload directory", ex);
-        }
-    }
-    
-    public String storeFile(MultipartFile file) throws IOException {
-        String fileName = System.currentTimeMillis() + "_" + 
-                         FilenameUtils.getName(file.getOriginalFilename());
-        
-        Path targetLocation = this.fileStorageLocation.resolve(fileName);
-        Files.copy(file.getInputStream(), targetLocation);
-        
-        return targetLocation.toString();
-    }
-    
-    public String calculateChecksum(MultipartFile file) throws IOException, NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("MD5");
-        byte[] hash = digest.digest(file.getBytes());
-        StringBuilder hexString = new StringBuilder();
-        
-        for (byte b : hash) {
-            hexString.append(String.format("%02x", b));
-        }
-        
-        return hexString.toString();
-    }
-    
-    public void deleteFile(String filePath) {
-        try {
-            Files.deleteIfExists(Paths.get(filePath));
-        } catch (IOException e) {
-            System.err.println("Could not delete file: " + filePath);
-        }
-    }
-}
\ No newline at end of file